@@ -0,0 +1,121 @@
+package benchmark;
+
+import matcher.NotDoneMatcher;
+import matcher.PrioMatcher;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the model under contention, with 1, 2, 4 ... threads up to the
+ * given number. Each thread runs a mix of reads, a page of findTasks or getTaskById, and
+ * writes, setState on a random task, either all on one shared project, where the threads
+ * contend for its lock, or each on a project of its own, where they only share the manager.
+ * <pre>
+ * java benchmark.ContentionBenchmark [max threads] [write percent] [seconds per run]
+ * </pre>
+ * Prints the operations per second of each run, after a warm-up run.
+ */
+
+public class ContentionBenchmark {
+    private static final int TASKS_PER_PROJECT = 10_000;
+    private static final TaskState[] STATES = TaskState.values();
+
+    private final List<Project> projects = new ArrayList<>();
+    private final int writePercent;
+
+    ContentionBenchmark(int projectCount, int writePercent) {
+        this.writePercent = writePercent;
+        ProjectsManager manager = new ProjectsManager();
+        Random random = new Random(1);
+        LocalDate today = LocalDate.now();
+        for (int p = 0; p < projectCount; p++) {
+            Project project = manager.addProject("Contention " + p, "");
+            for (int t = 0; t < TASKS_PER_PROJECT; t++) {
+                project.addTask("Task " + t, TaskPrio.values()[random.nextInt(TaskPrio.values().length)],
+                        STATES[random.nextInt(STATES.length)], null, today);
+            }
+            projects.add(project);
+        }
+    }
+
+    /**
+     * Runs the operations on one project until the end time
+     */
+    private void work(Project project, long seed, long endNanos, LongAdder operations) {
+        Random random = new Random(seed);
+        NotDoneMatcher notDone = new NotDoneMatcher();
+        PrioMatcher high = new PrioMatcher(TaskPrio.HIGH);
+        long count = 0;
+        while (System.nanoTime() < endNanos) {
+            int operation = random.nextInt(100);
+            int id = 1 + random.nextInt(TASKS_PER_PROJECT);
+            if (operation < writePercent) {
+                project.getTaskById(id).setState(STATES[random.nextInt(STATES.length)]);
+            } else if (operation % 2 == 0) {
+                project.findTasks(operation % 4 == 0 ? notDone : high, 20, random.nextInt(100));
+            } else {
+                Task task = project.getTaskById(id);
+                if (task == null) {
+                    throw new IllegalStateException("Task " + id + " is missing");
+                }
+            }
+            count++;
+        }
+        operations.add(count);
+    }
+
+    /**
+     *
+     * @param shared true to run all threads on the first project, false for a project per thread
+     * @return the operations per second
+     */
+    double run(int threads, boolean shared, double seconds) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        List<Thread> running = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] endNanos = new long[1];
+        for (int t = 0; t < threads; t++) {
+            Project project = projects.get(shared ? 0 : t);
+            long seed = t;
+            running.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                work(project, seed, endNanos[0], operations);
+            }));
+        }
+        running.forEach(Thread::start);
+        endNanos[0] = System.nanoTime() + (long) (seconds * 1e9);
+        start.countDown(); // publishes the end time to the threads
+        for (Thread thread : running) {
+            thread.join();
+        }
+        return operations.sum() / seconds;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int writePercent = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 3;
+        ContentionBenchmark benchmark = new ContentionBenchmark(maxThreads, writePercent);
+        System.out.printf("%d%% writes, %d tasks per project, %d cores%n", writePercent, TASKS_PER_PROJECT,
+                Runtime.getRuntime().availableProcessors());
+        benchmark.run(maxThreads, true, seconds); // warm-up
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            System.out.printf("%3d threads  one project %12.0f ops/s  own projects %12.0f ops/s%n", threads,
+                    benchmark.run(threads, true, seconds), benchmark.run(threads, false, seconds));
+        }
+    }
+}
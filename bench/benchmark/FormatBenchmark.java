@@ -0,0 +1,126 @@
+package benchmark;
+
+import io.ProjectsFileIO;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares saving and loading projects with Java serialization, the format of projects.ser
+ * before the binary format, against the binary format, plain and compressed.
+ * Reports the file size and the save and load times of each. Loading includes reading
+ * every task and rebuilding the projects' indexes, also for tasks the binary format loads lazily.
+ * <pre>
+ * java benchmark.FormatBenchmark [tasks] [projects] [directory]
+ * </pre>
+ * The files are written to a new temporary directory, or the given one, and deleted afterwards.
+ */
+
+public class FormatBenchmark {
+    private static final String[] PEOPLE = {"anna", "bo", "cecilia", "david", "eva"};
+
+    /**
+     * Saves and loads the projects in one format and prints the results
+     */
+    private static void measure(String name, File file, List<Project> projects, int taskCount, Format format)
+            throws Exception {
+        System.gc();
+        long start = System.nanoTime();
+        format.save(file, projects);
+        long saved = System.nanoTime();
+        int loadedTasks = 0;
+        for (Project project : format.load(file)) {
+            loadedTasks += project.countTasks(task -> true); // loads tasks the binary format defers
+        }
+        long end = System.nanoTime();
+        if (loadedTasks != taskCount) {
+            throw new IllegalStateException(name + " loaded " + loadedTasks + " of " + taskCount + " tasks");
+        }
+        System.out.printf("%-20s %8.1f MB  save %6.2f s  load %6.2f s%n", name, Files.size(file.toPath()) / 1e6,
+                (saved - start) / 1e9, (end - saved) / 1e9);
+        Files.delete(file.toPath());
+    }
+
+    /**
+     * One way of storing the projects
+     */
+    private interface Format {
+        void save(File file, List<Project> projects) throws Exception;
+
+        List<Project> load(File file) throws Exception;
+    }
+
+    /**
+     * Generates projects with varied tasks, like a real projects file
+     */
+    private static List<Project> generate(int taskCount, int projectCount) {
+        ProjectsManager manager = new ProjectsManager();
+        Random random = new Random(1);
+        for (int p = 0; p < projectCount; p++) {
+            Project project = manager.addProject("Project " + p, "Generated for the format benchmark");
+            int tasks = taskCount / projectCount + (p < taskCount % projectCount ? 1 : 0);
+            for (int t = 0; t < tasks; t++) {
+                Task task = project.addTask("Task " + t + " of project " + p + ", step " + random.nextInt(100),
+                        TaskPrio.values()[random.nextInt(TaskPrio.values().length)]);
+                int state = random.nextInt(3);
+                if (state > 0) {
+                    task.setState(TaskState.values()[state]);
+                    task.setTakenBy(PEOPLE[random.nextInt(PEOPLE.length)]);
+                }
+            }
+        }
+        return manager.getProjects();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int projects = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Path directory = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("format-benchmark");
+        List<Project> data = generate(tasks, projects);
+        System.out.printf("%d tasks in %d projects%n", tasks, projects);
+        measure("Java serialization", directory.resolve("projects.ser").toFile(), data, tasks, new Format() {
+            @Override
+            public void save(File file, List<Project> projects) throws Exception {
+                ProjectsFileIO.serializeToFile(file, projects);
+            }
+
+            @Override
+            public List<Project> load(File file) throws Exception {
+                return ProjectsFileIO.deSerializeFromFile(file);
+            }
+        });
+        measure("binary", directory.resolve("projects.bin").toFile(), data, tasks, new Format() {
+            @Override
+            public void save(File file, List<Project> projects) throws Exception {
+                ProjectsFileIO.saveToFile(file, projects);
+            }
+
+            @Override
+            public List<Project> load(File file) throws Exception {
+                return ProjectsFileIO.loadFromFile(file);
+            }
+        });
+        measure("binary, compressed", directory.resolve("projects.binz").toFile(), data, tasks, new Format() {
+            @Override
+            public void save(File file, List<Project> projects) throws Exception {
+                ProjectsFileIO.saveToFile(file, projects, true);
+            }
+
+            @Override
+            public List<Project> load(File file) throws Exception {
+                return ProjectsFileIO.loadFromFile(file);
+            }
+        });
+        if (args.length <= 2) {
+            Files.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package benchmark;
+
+import model.Project;
+import model.ProjectsManager;
+import model.TaskPrio;
+import server.ProjectsServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loads a ProjectsServer over loopback with many concurrent clients and reports the
+ * throughput and the latency percentiles. Each client is a virtual thread sending one
+ * request after another: mostly task listings and single tasks, and some conditional
+ * task updates that read the task's version first.
+ * <pre>
+ * java benchmark.LoadGenerator [clients] [seconds] [url]
+ * </pre>
+ * Without a url a server is started in this process on a free loopback port,
+ * over generated projects.
+ */
+
+public class LoadGenerator {
+    private static final int PROJECTS = 20;
+    private static final int TASKS_PER_PROJECT = 1000;
+    private static final Pattern VERSION = Pattern.compile("\"version\":(\\d+)");
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int projectCount;
+    private final int taskCount;
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    LoadGenerator(HttpClient client, String baseUrl, int projectCount, int taskCount) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.projectCount = projectCount;
+        this.taskCount = taskCount;
+    }
+
+    /**
+     * Sends requests until the end time
+     * @return the latency of each request in nanoseconds
+     */
+    private long[] runClient(long seed, long endNanos) throws InterruptedException {
+        Random random = new Random(seed);
+        long[] latencies = new long[1024];
+        int count = 0;
+        while (System.nanoTime() < endNanos) {
+            String task = "/projects/" + (1 + random.nextInt(projectCount)) + "/tasks";
+            int operation = random.nextInt(10);
+            long start = System.nanoTime();
+            try {
+                if (operation < 6) {
+                    send(get(task + "?limit=20&offset=" + random.nextInt(taskCount)));
+                } else if (operation < 9) {
+                    send(get(task + "/" + (1 + random.nextInt(taskCount))));
+                } else {
+                    update(task + "/" + (1 + random.nextInt(taskCount)), random);
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+            long latency = System.nanoTime() - start;
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Reads a task and sets its priority if nobody changed it meanwhile, one latency for both requests
+     */
+    private void update(String task, Random random) throws IOException, InterruptedException {
+        String body = send(get(task));
+        Matcher version = body == null ? null : VERSION.matcher(body);
+        if (version == null || !version.find()) {
+            return;
+        }
+        String form = "prio=" + TaskPrio.values()[random.nextInt(TaskPrio.values().length)].name()
+                + "&version=" + version.group(1);
+        send(HttpRequest.newBuilder(URI.create(baseUrl + task))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)).build());
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    /**
+     *
+     * @return the body, or null if the request failed
+     */
+    private String send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() == 409) {
+            conflicts.incrementAndGet();
+            return null;
+        }
+        if (response.statusCode() >= 300) {
+            errors.incrementAndGet();
+            return null;
+        }
+        return response.body();
+    }
+
+    /**
+     * Runs the clients for the given time and prints the results
+     */
+    void run(int clients, int seconds) throws Exception {
+        long endNanos = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[]>> results = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clients; i++) {
+                long seed = i;
+                results.add(threads.submit(() -> runClient(seed, endNanos)));
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        int total = 0;
+        for (Future<long[]> result : results) {
+            total += result.get().length;
+        }
+        long[] latencies = new long[total];
+        int position = 0;
+        for (Future<long[]> result : results) {
+            long[] part = result.get();
+            System.arraycopy(part, 0, latencies, position, part.length);
+            position += part.length;
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%d clients, %d requests in %.1f s: %.0f requests/s, %d conflicts, %d errors%n",
+                clients, total, elapsed, total / elapsed, conflicts.get(), errors.get());
+        System.out.printf("latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                percentile(latencies, 0.5), percentile(latencies, 0.9), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), total == 0 ? 0.0 : latencies[total - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    /**
+     * Generates projects with tasks numbered from 1, as the clients expect
+     */
+    private static ProjectsManager generate() {
+        ProjectsManager manager = new ProjectsManager();
+        Random random = new Random(1);
+        for (int p = 1; p <= PROJECTS; p++) {
+            Project project = manager.addProject("Project " + p, "Generated for the load test");
+            for (int t = 1; t <= TASKS_PER_PROJECT; t++) {
+                project.addTask("Task " + t + " of project " + p,
+                        TaskPrio.values()[random.nextInt(TaskPrio.values().length)]);
+            }
+        }
+        return manager;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        ProjectsServer server = null;
+        String url;
+        if (args.length > 2) {
+            url = args[2];
+        } else {
+            server = new ProjectsServer(generate(), new InetSocketAddress("127.0.0.1", 0));
+            server.start();
+            url = "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        try {
+            new LoadGenerator(client, url, PROJECTS, TASKS_PER_PROJECT).run(clients, seconds);
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import matcher.AndMatcher;
+import matcher.ITaskMatcher;
+import matcher.NotDoneMatcher;
+import matcher.OrMatcher;
+import matcher.PrioMatcher;
+import matcher.TakenByMatcher;
+import matcher.TextMatcher;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares naive and planned evaluation of combined matchers on skewed data.
+ * Naive evaluation checks every task with the matcher as written, its parts in the given
+ * order, and sorts the matches. Planned evaluation is Project.findTasks, which reorders the
+ * parts by selectivity and cost and reads the candidates from an index.
+ * The tasks are skewed: 5% are HIGH, 10% are not done and 1% are taken by bob.
+ * <pre>
+ * java benchmark.PlannerBenchmark [tasks] [rounds]
+ * </pre>
+ * Prints the median time of both evaluations per query, after a warm-up round.
+ */
+
+public class PlannerBenchmark {
+    private final Project project;
+    private final List<Task> allTasks;
+
+    PlannerBenchmark(Project project) {
+        this.project = project;
+        this.allTasks = project.findTasks(task -> true);
+    }
+
+    /**
+     * Generates the skewed tasks
+     */
+    private static Project generate(int count) {
+        Project project = new ProjectsManager().addProject("Planner benchmark", "");
+        Random random = new Random(1);
+        String[] words = {"deploy", "review", "fix", "write", "test", "release", "plan", "design"};
+        for (int i = 0; i < count; i++) {
+            int draw = random.nextInt(100);
+            TaskPrio prio = draw < 5 ? TaskPrio.HIGH : draw < 50 ? TaskPrio.MEDIUM : TaskPrio.LOW;
+            Task task = project.addTask(words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]
+                    + " " + i, prio);
+            if (random.nextInt(100) >= 10) {
+                task.setState(TaskState.DONE);
+            }
+            if (random.nextInt(100) == 0) {
+                task.setTakenBy("bob");
+            } else if (random.nextInt(4) == 0) {
+                task.setTakenBy("person " + random.nextInt(50));
+            }
+        }
+        return project;
+    }
+
+    /**
+     *
+     * @return the matches of a naive evaluation, sorted like findTasks
+     */
+    private List<Task> naive(ITaskMatcher matcher) {
+        List<Task> matches = new ArrayList<>();
+        for (Task task : allTasks) {
+            if (matcher.match(task)) {
+                matches.add(task);
+            }
+        }
+        matches.sort(null);
+        return matches;
+    }
+
+    /**
+     * Times both evaluations of one query and checks they find the same number of tasks
+     */
+    void run(String name, ITaskMatcher matcher, int rounds) {
+        long[] naiveTimes = new long[rounds];
+        long[] plannedTimes = new long[rounds];
+        int naiveCount = 0;
+        int plannedCount = 0;
+        for (int round = -1; round < rounds; round++) { // round -1 warms up
+            long start = System.nanoTime();
+            naiveCount = naive(matcher).size();
+            long middle = System.nanoTime();
+            plannedCount = project.findTasks(matcher).size();
+            long end = System.nanoTime();
+            if (round >= 0) {
+                naiveTimes[round] = middle - start;
+                plannedTimes[round] = end - middle;
+            }
+        }
+        if (naiveCount != plannedCount) {
+            throw new IllegalStateException(name + ": naive found " + naiveCount + ", planned " + plannedCount);
+        }
+        System.out.printf("%-40s %7d matches  naive %8.2f ms  planned %8.2f ms%n",
+                name, plannedCount, median(naiveTimes), median(plannedTimes));
+    }
+
+    private static double median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+    public static void main(String[] args) {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 11;
+        PlannerBenchmark benchmark = new PlannerBenchmark(generate(tasks));
+        System.out.printf("%d tasks, median of %d rounds%n", tasks, rounds);
+        // written with the least selective part first, as a naive evaluation would take it
+        benchmark.run("not done and HIGH and taken by bob",
+                new AndMatcher(new NotDoneMatcher(), new PrioMatcher(TaskPrio.HIGH), new TakenByMatcher("bob")), rounds);
+        benchmark.run("words 'deploy review' and HIGH",
+                new AndMatcher(new TextMatcher("deploy review"), new PrioMatcher(TaskPrio.HIGH)), rounds);
+        benchmark.run("HIGH or taken by bob",
+                new OrMatcher(new PrioMatcher(TaskPrio.HIGH), new TakenByMatcher("bob")), rounds);
+        benchmark.run("not done",
+                new NotDoneMatcher(), rounds);
+    }
+}
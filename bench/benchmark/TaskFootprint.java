@@ -0,0 +1,154 @@
+package benchmark;
+
+import model.Project;
+import model.ProjectSnapshot;
+import model.ProjectsManager;
+import model.ProjectsSnapshot;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.lang.ref.Reference;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the heap taken per task by the compact Task against the original layout, a
+ * task with a LocalDate, two enum references, two Strings and an int, where every task has
+ * its own date and its own copy of the name it is taken by, as read from input.
+ * Both are measured without the descriptions, which take the same space in either layout.
+ * Also measures the heap per task of projects holding the compact tasks, with their indexes.
+ * <pre>
+ * java -Xmx8g benchmark.TaskFootprint [tasks] [projects]
+ * </pre>
+ * The default of 10 million tasks needs a heap of about 8 GB, mostly for the indexed projects.
+ * The heap used is read after full collections, so the numbers include the lists holding the tasks.
+ */
+
+public class TaskFootprint {
+    private static final String[] PEOPLE = {"anna", "bo", "cecilia", "david", "eva"};
+    private static final TaskState[] STATES = TaskState.values();
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+
+    /**
+     * A task in the layout before the compact one
+     */
+    @SuppressWarnings("unused")
+    private static final class OriginalTask {
+        private final String description;
+        private final int id;
+        private String takenBy;
+        private TaskState state;
+        private LocalDate lastUpdate;
+        private TaskPrio prio;
+
+        OriginalTask(String description, int id, String takenBy, TaskState state, LocalDate lastUpdate,
+                     TaskPrio prio) {
+            this.description = description;
+            this.id = id;
+            this.takenBy = takenBy;
+            this.state = state;
+            this.lastUpdate = lastUpdate;
+            this.prio = prio;
+        }
+    }
+
+    /**
+     *
+     * @return the heap in use after the garbage is collected
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) { // until a collection frees nothing more
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     *
+     * @return the original tasks, with the descriptions
+     */
+    private static List<List<OriginalTask>> original(String[] descriptions, int projects, Random random) {
+        LocalDate today = LocalDate.now();
+        List<List<OriginalTask>> lists = new ArrayList<>(projects);
+        int next = 0;
+        for (int p = 0; p < projects; p++) {
+            int tasks = descriptions.length / projects + (p < descriptions.length % projects ? 1 : 0);
+            List<OriginalTask> list = new ArrayList<>(tasks);
+            for (int t = 0; t < tasks; t++) {
+                String takenBy = random.nextInt(3) == 0 ? new String(PEOPLE[random.nextInt(PEOPLE.length)]) : null;
+                list.add(new OriginalTask(descriptions[next++], t + 1, takenBy,
+                        STATES[random.nextInt(STATES.length)], today.minusDays(random.nextInt(365)),
+                        PRIOS[random.nextInt(PRIOS.length)]));
+            }
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    /**
+     *
+     * @return a manager with the same kind of tasks in compact form
+     */
+    private static ProjectsManager compact(String[] descriptions, int projects, Random random) {
+        LocalDate today = LocalDate.now();
+        ProjectsManager manager = new ProjectsManager();
+        int next = 0;
+        for (int p = 0; p < projects; p++) {
+            Project project = manager.addProject("Footprint " + p, "");
+            int tasks = descriptions.length / projects + (p < descriptions.length % projects ? 1 : 0);
+            for (int t = 0; t < tasks; t++) {
+                String takenBy = random.nextInt(3) == 0 ? new String(PEOPLE[random.nextInt(PEOPLE.length)]) : null;
+                project.addTask(descriptions[next++], PRIOS[random.nextInt(PRIOS.length)],
+                        STATES[random.nextInt(STATES.length)], takenBy, today.minusDays(random.nextInt(365)));
+            }
+        }
+        return manager;
+    }
+
+    public static void main(String[] args) {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int projects = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        String[] descriptions = new String[tasks];
+        for (int i = 0; i < tasks; i++) {
+            descriptions[i] = "Task " + i;
+        }
+        long base = usedHeap();
+
+        List<List<OriginalTask>> original = original(descriptions, projects, new Random(1));
+        double originalBytes = (usedHeap() - base) / (double) tasks;
+        Reference.reachabilityFence(original);
+        original = null;
+        base = usedHeap();
+
+        ProjectsManager manager = compact(descriptions, projects, new Random(1));
+        long withProjects = usedHeap();
+        ProjectsSnapshot snapshot = manager.captureSnapshot();
+        List<List<Task>> copies = new ArrayList<>(projects);
+        for (ProjectSnapshot project : snapshot.getProjects()) {
+            copies.add(project.getTasks()); // detached copies of the compact tasks
+        }
+        double compactBytes = (usedHeap() - withProjects) / (double) tasks;
+        double projectBytes = (withProjects - base) / (double) tasks;
+        Reference.reachabilityFence(manager);
+        if (copies.stream().mapToInt(List::size).sum() != tasks) {
+            throw new IllegalStateException("Copied " + copies.stream().mapToInt(List::size).sum() + " tasks");
+        }
+        snapshot.release();
+
+        System.out.printf("%d tasks in %d projects, bytes per task without the description%n", tasks, projects);
+        System.out.printf("original layout          %6.1f%n", originalBytes);
+        System.out.printf("compact Task             %6.1f  (%.0f%% less)%n", compactBytes,
+                100 * (1 - compactBytes / originalBytes));
+        System.out.printf("in a project, indexed    %6.1f%n", projectBytes);
+    }
+}
@@ -0,0 +1,153 @@
+package check;
+
+import model.Project;
+import model.ProjectState;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that the running aggregates of a Project, the state answered by getState and the
+ * date answered by getLastUpdated, match a full rescan of the tasks. Random sequences of
+ * adds, removes, state, priority and takenBy changes, restores, batches and off-heap moves
+ * are applied, and both getters are compared with a recount after every step.
+ * <pre>
+ * java check.AggregatesCheck [sequences] [steps] [seed]
+ * </pre>
+ * Prints the first mismatch and exits with status 1, or prints the number of checked steps.
+ */
+
+public class AggregatesCheck {
+    private static final TaskState[] STATES = TaskState.values();
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final String[] PEOPLE = {"anna", "bo", "cecilia"};
+
+    private final Random random;
+    private final LocalDate today = LocalDate.now();
+
+    AggregatesCheck(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Applies random changes to a new project, checking the aggregates after each one
+     * @return a description of the first mismatch, or null if there was none
+     */
+    String runSequence(ProjectsManager manager, int sequence, int steps) {
+        Project project = manager.addProject("Sequence " + sequence, "", randomDate());
+        String mismatch = compare(project, "creation");
+        for (int step = 0; step < steps && mismatch == null; step++) {
+            String change = change(project);
+            mismatch = compare(project, "step " + step + " (" + change + ")");
+        }
+        return mismatch;
+    }
+
+    /**
+     * Makes one random change
+     * @return what was changed
+     */
+    private String change(Project project) {
+        List<Task> tasks = project.findTasks(task -> true);
+        // by ID, since the tasks found in an offloaded project are read-only copies
+        Task task = tasks.isEmpty() ? null : project.getTaskById(tasks.get(random.nextInt(tasks.size())).getId());
+        int operation = random.nextInt(task == null ? 2 : 10);
+        switch (operation) {
+            case 0:
+                project.addTask("Task " + random.nextInt(1000), randomPrio());
+                return "add";
+            case 1:
+                project.restoreTask(project.getNextTaskId(), "Restored " + random.nextInt(1000), randomPrio(),
+                        randomState(), null, randomDate());
+                return "restore";
+            case 2:
+                project.removeTask(task);
+                return "remove " + task.getId();
+            case 3:
+            case 4:
+                task.setState(randomState());
+                return "state of " + task.getId();
+            case 5:
+                task.setPrio(randomPrio());
+                return "prio of " + task.getId();
+            case 6:
+                if (task.getTakenBy() == null) {
+                    task.setTakenBy(PEOPLE[random.nextInt(PEOPLE.length)]);
+                }
+                return "takenBy of " + task.getId();
+            case 7:
+                project.restoreTaskValues(task.getId(), randomState(), randomPrio(), null, randomDate());
+                return "restore values of " + task.getId();
+            case 8:
+                TaskState from = randomState();
+                project.batch().setState(candidate -> candidate.getState() == from, randomState()).apply();
+                return "batch from " + from;
+            default:
+                project.offloadTasks();
+                return "offload";
+        }
+    }
+
+    /**
+     * Compares the aggregates with a recount of the tasks
+     * @return a description of the mismatch, or null if they match
+     */
+    private static String compare(Project project, String after) {
+        ProjectState state = project.getState();
+        LocalDate lastUpdated = project.getLastUpdated();
+        List<Task> tasks = project.findTasks(task -> true);
+        ProjectState expectedState = tasks.isEmpty() ? ProjectState.EMPTY : ProjectState.COMPLETED;
+        LocalDate expectedLastUpdated = project.getCreated();
+        for (Task task : tasks) {
+            if (task.getState() != TaskState.DONE) {
+                expectedState = ProjectState.ONGOING;
+            }
+            if (task.getLastUpdate().isAfter(expectedLastUpdated)) {
+                expectedLastUpdated = task.getLastUpdate();
+            }
+        }
+        if (state != expectedState || !lastUpdated.equals(expectedLastUpdated)) {
+            return project.getTitle() + " after " + after + ": state " + state + ", last updated " + lastUpdated
+                    + ", a rescan of " + tasks.size() + " tasks gives " + expectedState + ", " + expectedLastUpdated;
+        }
+        return null;
+    }
+
+    /**
+     *
+     * @return a date within a month of today, also in the future to move past the project's creation
+     */
+    private LocalDate randomDate() {
+        return today.plusDays(random.nextInt(61) - 30);
+    }
+
+    private TaskState randomState() {
+        return STATES[random.nextInt(STATES.length)];
+    }
+
+    private TaskPrio randomPrio() {
+        return PRIOS[random.nextInt(PRIOS.length)];
+    }
+
+    public static void main(String[] args) {
+        int sequences = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        AggregatesCheck check = new AggregatesCheck(seed);
+        ProjectsManager manager = new ProjectsManager();
+        for (int sequence = 0; sequence < sequences; sequence++) {
+            String mismatch = check.runSequence(manager, sequence, steps);
+            if (mismatch != null) {
+                System.out.println("Mismatch with seed " + seed + ", " + mismatch);
+                System.exit(1);
+            }
+        }
+        System.out.printf("%d sequences of %d steps: aggregates match a rescan after every step%n",
+                sequences, steps);
+    }
+}
@@ -0,0 +1,221 @@
+package check;
+
+import matcher.NotDoneMatcher;
+import model.Project;
+import model.ProjectState;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Checks that concurrent use of one ProjectsManager loses no updates. Worker threads add
+ * tasks, search them with findTasks, change the state of their own tasks and race for
+ * shared hot tasks with setState, compareAndSetState and setTakenBy claims. Afterwards:
+ * <ul>
+ *     <li>every added task is in its project under a unique ID,</li>
+ *     <li>each worker's tasks have the state the worker set last,</li>
+ *     <li>each hot task's version moved by exactly the number of successful changes,</li>
+ *     <li>each hot task was claimed exactly once, by the thread that saw its claim succeed,</li>
+ *     <li>the indexes and aggregates match a rescan of the tasks.</li>
+ * </ul>
+ * <pre>
+ * java check.ConcurrencyStress [threads] [operations per thread] [seed]
+ * </pre>
+ * Prints the first problem and exits with status 1, or prints what was checked.
+ */
+
+public class ConcurrencyStress {
+    private static final int PROJECTS = 4;
+    private static final int HOT_TASKS = 16;
+    private static final TaskState[] STATES = TaskState.values();
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+
+    private final List<Project> projects = new ArrayList<>();
+    private final List<Task> hotTasks = new ArrayList<>();
+    private final long[] hotVersions = new long[HOT_TASKS];
+    private final AtomicLongArray hotChanges = new AtomicLongArray(HOT_TASKS);
+    private final Map<Task, String> claims = new ConcurrentHashMap<>();
+    private final List<String> problems = Collections.synchronizedList(new ArrayList<>());
+
+    ConcurrencyStress(ProjectsManager manager) {
+        for (int p = 0; p < PROJECTS; p++) {
+            projects.add(manager.addProject("Stress " + p, ""));
+        }
+        for (int i = 0; i < HOT_TASKS; i++) {
+            Task task = projects.get(i % PROJECTS).addTask("Hot " + i, TaskPrio.MEDIUM);
+            hotTasks.add(task);
+            hotVersions[i] = task.getVersion();
+        }
+    }
+
+    /**
+     * The tasks one worker added and the state it set on them last
+     */
+    private static final class Worker {
+        final List<Task> added = new ArrayList<>();
+        final Map<Task, TaskState> lastState = new HashMap<>();
+    }
+
+    /**
+     * Runs random operations on the shared projects
+     */
+    private void work(int thread, Worker worker, long seed, int operations) {
+        Random random = new Random(seed);
+        String name = "worker " + thread;
+        for (int i = 0; i < operations; i++) {
+            int operation = random.nextInt(10);
+            Project project = projects.get(random.nextInt(PROJECTS));
+            if (operation < 3 || worker.added.isEmpty()) {
+                Task task = project.addTask(name + " task " + i, PRIOS[random.nextInt(PRIOS.length)]);
+                worker.added.add(task);
+                worker.lastState.put(task, task.getState());
+            } else if (operation < 5) {
+                TaskState state = STATES[random.nextInt(STATES.length)];
+                List<Task> found = project.findTasks(task -> task.getState() == state);
+                for (int t = 1; t < found.size(); t++) {
+                    if (found.get(t - 1).compareTo(found.get(t)) >= 0) {
+                        problems.add("findTasks returned " + found.get(t - 1) + " before " + found.get(t));
+                        break;
+                    }
+                }
+            } else if (operation < 7) {
+                Task task = worker.added.get(random.nextInt(worker.added.size()));
+                TaskState state = STATES[random.nextInt(STATES.length)];
+                task.setState(state);
+                worker.lastState.put(task, state);
+            } else {
+                int hot = random.nextInt(HOT_TASKS);
+                Task task = hotTasks.get(hot);
+                if (operation == 7) {
+                    task.setState(STATES[random.nextInt(STATES.length)]);
+                    hotChanges.incrementAndGet(hot);
+                } else if (operation == 8) {
+                    if (task.compareAndSetState(task.getVersion(), STATES[random.nextInt(STATES.length)])) {
+                        hotChanges.incrementAndGet(hot);
+                    }
+                } else {
+                    try {
+                        task.setTakenBy(name);
+                        hotChanges.incrementAndGet(hot);
+                        String earlier = claims.putIfAbsent(task, name);
+                        if (earlier != null) {
+                            problems.add(task + " was claimed by both " + earlier + " and " + name);
+                        }
+                    } catch (IllegalStateException e) {
+                        // claimed by another worker first
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the projects with what the workers did
+     */
+    private void verify(List<Worker> workers) {
+        int expectedTasks = HOT_TASKS;
+        for (Worker worker : workers) {
+            expectedTasks += worker.added.size();
+            for (Map.Entry<Task, TaskState> last : worker.lastState.entrySet()) {
+                if (last.getKey().getState() != last.getValue()) {
+                    problems.add(last.getKey() + " has state " + last.getKey().getState() + ", last set "
+                            + last.getValue());
+                }
+            }
+        }
+        int tasks = 0;
+        for (Project project : projects) {
+            List<Task> all = project.findTasks(task -> true);
+            tasks += all.size();
+            if (all.size() != project.getTaskCount()) {
+                problems.add(project.getTitle() + " counts " + project.getTaskCount() + " tasks, finds " + all.size());
+            }
+            Set<Integer> ids = new HashSet<>();
+            boolean done = true;
+            for (Task task : all) {
+                if (!ids.add(task.getId())) {
+                    problems.add(project.getTitle() + " has task ID " + task.getId() + " twice");
+                }
+                if (project.getTaskById(task.getId()) != task) {
+                    problems.add(project.getTitle() + " does not find " + task + " by its ID");
+                }
+                done &= task.getState() == TaskState.DONE;
+            }
+            long scanned = all.stream().filter(task -> task.getState() != TaskState.DONE).count();
+            int indexed = project.countTasks(new NotDoneMatcher()); // answered by the state index
+            if (scanned != indexed) {
+                problems.add(project.getTitle() + " indexes " + indexed + " tasks not done, a rescan finds " + scanned);
+            }
+            if ((project.getState() == ProjectState.COMPLETED) != done) {
+                problems.add(project.getTitle() + " is " + project.getState() + " but all done is " + done);
+            }
+        }
+        if (tasks != expectedTasks) {
+            problems.add("found " + tasks + " tasks, added " + expectedTasks);
+        }
+        for (int i = 0; i < HOT_TASKS; i++) {
+            Task task = hotTasks.get(i);
+            long changes = task.getVersion() - hotVersions[i];
+            if (changes != hotChanges.get(i)) {
+                problems.add(task + " changed " + changes + " times, " + hotChanges.get(i) + " changes succeeded");
+            }
+            String claimedBy = claims.get(task);
+            if (claimedBy != null && !claimedBy.equals(task.getTakenBy())) {
+                problems.add(task + " is taken by " + task.getTakenBy() + ", claimed by " + claimedBy);
+            }
+            if (claimedBy == null && task.getTakenBy() != null) {
+                problems.add(task + " is taken by " + task.getTakenBy() + " but no claim succeeded");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        ConcurrencyStress stress = new ConcurrencyStress(new ProjectsManager());
+        List<Worker> workers = new ArrayList<>();
+        List<Thread> running = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            Worker worker = new Worker();
+            workers.add(worker);
+            int thread = t;
+            running.add(new Thread(() -> {
+                try {
+                    start.await();
+                    stress.work(thread, worker, seed * 31 + thread, operations);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    stress.problems.add("worker " + thread + " failed: " + e);
+                }
+            }, "stress-" + t));
+        }
+        running.forEach(Thread::start);
+        start.countDown();
+        for (Thread thread : running) {
+            thread.join();
+        }
+        stress.verify(workers);
+        if (!stress.problems.isEmpty()) {
+            System.out.println(stress.problems.size() + " problems with seed " + seed + ", first: "
+                    + stress.problems.get(0));
+            System.exit(1);
+        }
+        System.out.printf("%d threads of %d operations: no lost or duplicated updates%n", threads, operations);
+    }
+}
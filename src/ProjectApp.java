@@ -1,11 +1,10 @@
-import io.ProjectsFileIO;
-import model.Project;
+import io.WriteAheadLog;
 import model.ProjectsManager;
 import ui.MainUI;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.List;
+import java.io.StreamCorruptedException;
 
 public class ProjectApp {
     private static final String FILE_NAME = "projects.ser";
@@ -13,29 +12,26 @@ public class ProjectApp {
     public void run() throws Exception { // we do not catch all exceptions
 
         File projectsFile = new File(FILE_NAME);
-        ProjectsManager projectsManager = new ProjectsManager();
-        boolean couldReadFile = false;
+        WriteAheadLog changeLog = null;
 
         try {
 
-            if (projectsFile.exists()) {
-                List<Project> projects = ProjectsFileIO.deSerializeFromFile(projectsFile);
-                projectsManager.setProjects(projects);
-                couldReadFile = true;
-            }
+            // loads the projects and logs every change as it happens
+            changeLog = WriteAheadLog.open(projectsFile);
+            ProjectsManager projectsManager = changeLog.getProjectsManager();
 
             MainUI ui = new MainUI(projectsManager);
             ui.mainLoop();
 
-        } catch (FileNotFoundException | ClassNotFoundException e) {
+        } catch (FileNotFoundException | ClassNotFoundException | StreamCorruptedException e) {
             System.out.println("Could not load projects from file, please check the data file.");
             System.out.println("Continuing with empty manager.");
         }
 
-        // run method about to exit - save data
-        if(couldReadFile || !projectsFile.exists()) {
-            List<Project> projectsToSave = projectsManager.getProjects();
-            ProjectsFileIO.serializeToFile(projectsFile, projectsToSave);
+        // run method about to exit - save data, so the next start does not replay the log
+        if(changeLog != null) {
+            changeLog.checkpoint();
+            changeLog.close();
         }
         System.out.println("Application exits");
     }
@@ -0,0 +1,174 @@
+package io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * Buffered reader of the primitive values written by ChannelWriter.
+ * Reads either from a channel or directly from a buffer, such as a memory-mapped file region.
+ * Lengths and counts are checked against the bytes left before anything is allocated for them,
+ * so damaged data fails with StreamCorruptedException rather than running out of memory.
+ */
+
+class ChannelReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final SeekableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long filled; // bytes read from the channel, or the start of the buffer
+
+    ChannelReader(SeekableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.limit(0);
+    }
+
+    /**
+     * Reads the remaining bytes of the buffer, without a channel behind it
+     * @param bytes
+     */
+    ChannelReader(ByteBuffer bytes) {
+        this.channel = null;
+        this.buffer = bytes;
+        this.filled = -bytes.position();
+    }
+
+    /**
+     *
+     * @return the number of bytes read so far
+     */
+    long position() {
+        if (channel == null) {
+            return filled + buffer.position();
+        }
+        return filled - buffer.remaining();
+    }
+
+    /**
+     *
+     * @return the number of bytes left to read
+     */
+    long remaining() throws IOException {
+        if (channel == null) {
+            return buffer.remaining();
+        }
+        return buffer.remaining() + Math.max(0, channel.size() - channel.position());
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    void readBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            require(1);
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Reads a length or a count of items that take at least one byte each
+     * @throws StreamCorruptedException if it is negative or more than the bytes left
+     */
+    int readLength() throws IOException {
+        int length = readVarInt();
+        if (length < 0 || length > remaining()) {
+            throw new StreamCorruptedException("Invalid length " + Integer.toUnsignedString(length));
+        }
+        return length;
+    }
+
+    int readFixedInt() throws IOException {
+        require(4);
+        return buffer.getInt();
+    }
+
+    long readFixedLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    long readSignedVarLong() throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigzag >>> 1) ^ -(zigzag & 1);
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    /**
+     * Reads a date written as its epoch day
+     * @throws StreamCorruptedException if the day is outside the int range tasks store
+     */
+    LocalDate readDate() throws IOException {
+        long epochDay = readSignedVarLong();
+        if (epochDay != (int) epochDay) {
+            throw new StreamCorruptedException("Invalid epoch day " + epochDay);
+        }
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+    String readString() throws IOException {
+        int lengthPlusOne = readVarInt();
+        if (lengthPlusOne == 0) {
+            return null;
+        }
+        if (lengthPlusOne < 0 || lengthPlusOne - 1 > remaining()) {
+            throw new StreamCorruptedException("Invalid string length " + Integer.toUnsignedString(lengthPlusOne - 1));
+        }
+        byte[] bytes = new byte[lengthPlusOne - 1];
+        readBytes(bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        if (channel == null) {
+            throw new EOFException("Unexpected end of project data");
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of project data");
+            }
+            filled += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,165 @@
+package io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of the primitive values of the binary project format.
+ * Values are collected in a byte buffer that is written to the channel when full.
+ * Unsigned numbers are written as varints (7 bits per byte), signed numbers are zigzag encoded first.
+ */
+
+class ChannelWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private long flushed; // bytes already written to the channel
+
+    ChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    void writeByte(int value) throws IOException {
+        ensureRoom(1);
+        buffer.put((byte) value);
+    }
+
+    void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            ensureRoom(1);
+            int chunk = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+    /**
+     * Writes a non-negative int in 1 to 5 bytes
+     * @param value
+     */
+    void writeVarInt(int value) throws IOException {
+        ensureRoom(5);
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a signed long, small absolute values take few bytes
+     * @param value
+     */
+    void writeSignedVarLong(long value) throws IOException {
+        ensureRoom(10);
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    /**
+     * Writes an int as 4 bytes, big-endian
+     * @param value
+     */
+    void writeFixedInt(int value) throws IOException {
+        ensureRoom(4);
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes a long as 8 bytes, big-endian, for values that must have a fixed position
+     * @param value
+     */
+    void writeFixedLong(long value) throws IOException {
+        ensureRoom(8);
+        buffer.putLong(value);
+    }
+
+    /**
+     * Copies bytes from a file without passing them through the heap
+     * @param source
+     * @param position
+     * @param count
+     */
+    void transferFrom(FileChannel source, long position, long count) throws IOException {
+        flush();
+        while (count > 0) {
+            long copied = source.transferTo(position, count, channel);
+            if (copied <= 0) {
+                throw new IOException("Could not copy project data");
+            }
+            position += copied;
+            count -= copied;
+            flushed += copied;
+        }
+    }
+
+    /**
+     *
+     * @return the number of bytes written so far, including buffered bytes
+     */
+    long position() {
+        return flushed + buffer.position();
+    }
+
+    /**
+     * Writes a UTF-8 string prefixed with its length plus one, null is written as length 0
+     * @param value
+     */
+    void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length + 1);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the buffered bytes to the channel
+     */
+    void flush() throws IOException {
+        buffer.flip();
+        flushed += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered bytes and forces them to the storage device, for file channels
+     */
+    void sync() throws IOException {
+        flush();
+        if (channel instanceof FileChannel file) {
+            file.force(true);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
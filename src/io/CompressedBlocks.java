@@ -0,0 +1,171 @@
+package io;
+
+import model.Project;
+import model.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Task blocks of compressed ProjectsBinaryFormat files.
+ *
+ * A block is the length of its encoded tasks followed by the tasks compressed with Deflate,
+ * each block compressed on its own so one project can be read without the others.
+ * The tasks are encoded like uncompressed tasks, except that takenBy is a reference into
+ * a table of names written once for the whole file: 0 for null, otherwise the name's index plus one.
+ * Writing collects the names while encoding the blocks, the table is written after the last block.
+ */
+
+final class CompressedBlocks {
+    private static final int MAX_RATIO = 1032; // Deflate never expands data by more than this
+    private final Map<String, Integer> references = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final String[] copyableNames;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final ChannelWriter encodedOut = new ChannelWriter(Channels.newChannel(encoded));
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] compressed = new byte[1 << 16];
+
+    /**
+     * Starts a file whose table begins with the names of a file it copies blocks from
+     * @param copyableNames the names of the file whose blocks can be copied unchanged, or null
+     */
+    CompressedBlocks(String[] copyableNames) {
+        this.copyableNames = copyableNames;
+        if (copyableNames != null) {
+            for (String name : copyableNames) {
+                reference(name);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param fileNames the names of the file a block was read from
+     * @return true if the block's references are valid in this file
+     */
+    boolean canCopy(String[] fileNames) {
+        return fileNames != null && fileNames == copyableNames;
+    }
+
+    void writeBlock(ChannelWriter out, Collection<Task> tasks) throws IOException {
+        encoded.reset();
+        for (Task task : tasks) {
+            encodedOut.writeVarInt(task.getId());
+            encodedOut.writeString(task.getDescription());
+            encodedOut.writeByte(task.getState().ordinal() << 4 | task.getPrio().ordinal());
+            encodedOut.writeSignedVarLong(task.getLastUpdate().toEpochDay());
+            encodedOut.writeVarInt(reference(task.getTakenBy()));
+        }
+        encodedOut.flush();
+        out.writeVarInt(encoded.size());
+        deflater.reset();
+        deflater.setInput(encoded.toByteArray());
+        deflater.finish();
+        while (!deflater.finished()) {
+            int length = deflater.deflate(compressed);
+            out.writeBytes(compressed, 0, length);
+        }
+    }
+
+    /**
+     * Writes the table of names, after the last block
+     */
+    void writeNames(ChannelWriter out) throws IOException {
+        out.writeVarInt(names.size());
+        for (String name : names) {
+            out.writeString(name);
+        }
+    }
+
+    void end() {
+        deflater.end();
+    }
+
+    private int reference(String name) {
+        if (name == null) {
+            return 0;
+        }
+        Integer reference = references.get(name);
+        if (reference == null) {
+            names.add(name);
+            reference = names.size();
+            references.put(name, reference);
+        }
+        return reference;
+    }
+
+    /**
+     * Reads the table written by writeNames
+     */
+    static String[] readNames(ChannelReader in) throws IOException {
+        String[] names = new String[in.readLength()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = in.readString();
+        }
+        return names;
+    }
+
+    /**
+     * Decompresses a block and restores its tasks into the project
+     * @param block the stored bytes of the block
+     * @param schema the header of the file, with its names
+     * @param taskCount
+     * @param project
+     * @throws StreamCorruptedException if the block is damaged
+     * @throws IOException
+     */
+    static void readBlock(ByteBuffer block, ProjectsBinaryFormat.Schema schema, int taskCount, Project project)
+            throws IOException {
+        ChannelReader header = new ChannelReader(block);
+        int length = header.readVarInt();
+        if (length < 0 || length > header.remaining() * MAX_RATIO) {
+            throw new StreamCorruptedException("Invalid compressed task block length "
+                    + Integer.toUnsignedString(length));
+        }
+        byte[] tasks = new byte[length];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            int inflated = 0;
+            while (inflated < length) {
+                int read = inflater.inflate(tasks, inflated, length - inflated);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new StreamCorruptedException("Truncated compressed task block");
+                }
+                inflated += read;
+            }
+        } catch (DataFormatException e) {
+            StreamCorruptedException corrupted = new StreamCorruptedException("Invalid compressed task block");
+            corrupted.initCause(e);
+            throw corrupted;
+        } finally {
+            inflater.end();
+        }
+        ChannelReader in = new ChannelReader(ByteBuffer.wrap(tasks));
+        for (int i = 0; i < taskCount; i++) {
+            int id = in.readVarInt();
+            String description = in.readString();
+            if (description == null) {
+                throw new StreamCorruptedException("Missing task description");
+            }
+            int stateAndPrio = in.readByte();
+            LocalDate lastUpdate = in.readDate();
+            String takenBy = schema.takenBy(in.readVarInt());
+            project.restoreTask(id, description, schema.prio(stateAndPrio & 0x0F), schema.state(stateAndPrio >>> 4),
+                    takenBy, lastUpdate);
+        }
+    }
+}
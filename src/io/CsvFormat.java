@@ -0,0 +1,253 @@
+package io;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Exports and imports projects as CSV (RFC 4180) with one row per task, the project's values
+ * repeated on each row. Projects without tasks get one row with empty task columns.
+ * Empty fields are read as null. Both directions stream: tasks are written as they are read
+ * from the projects, and imports parse batches of rows in parallel, see StreamingImport.
+ */
+
+public final class CsvFormat {
+    static final String HEADER = "project_id,project_title,project_description,project_created,"
+            + "task_id,task_description,task_prio,task_state,task_taken_by,task_last_update";
+    private static final int COLUMNS = 10;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes all projects of the manager, see write(Writer, List)
+     * @param out
+     * @param manager
+     * @throws IOException
+     */
+    public static void write(Writer out, ProjectsManager manager) throws IOException {
+        write(out, manager.getProjects());
+    }
+
+    /**
+     * Writes one project, see write(Writer, List)
+     * @param out
+     * @param project
+     * @throws IOException
+     */
+    public static void write(Writer out, Project project) throws IOException {
+        write(out, List.of(project));
+    }
+
+    /**
+     * Writes the header and the rows of the projects, each project's tasks in natural order.
+     * The writer is flushed but not closed.
+     * @param out
+     * @param projects
+     * @throws IOException
+     */
+    public static void write(Writer out, List<Project> projects) throws IOException {
+        BufferedWriter buffered = new BufferedWriter(out, BUFFER_SIZE);
+        buffered.write(HEADER);
+        buffered.write("\r\n");
+        StringBuilder row = new StringBuilder(256);
+        for (Project project : projects) {
+            row.setLength(0);
+            row.append(project.getId()).append(',');
+            appendField(row, project.getTitle());
+            row.append(',');
+            appendField(row, project.getDescription());
+            row.append(',').append(project.getCreated()).append(',');
+            int projectLength = row.length();
+            boolean empty = true;
+            Iterator<Task> tasks = project.streamTasks(task -> true).iterator();
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                empty = false;
+                row.setLength(projectLength);
+                row.append(task.getId()).append(',');
+                appendField(row, task.getDescription());
+                row.append(',').append(task.getPrio().name()).append(',').append(task.getState().name()).append(',');
+                appendField(row, task.getTakenBy());
+                row.append(',').append(task.getLastUpdate()).append("\r\n");
+                buffered.append(row);
+            }
+            if (empty) {
+                row.append(",,,,,\r\n");
+                buffered.append(row);
+            }
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Imports all projects as new projects with new IDs, their tasks with new IDs in file order.
+     * Rows of a project must follow each other. Projects added before an error are kept.
+     * @param in
+     * @param manager
+     * @return the number of rows read
+     * @throws StreamCorruptedException if the header or a row is invalid, or a row's project title
+     * is already used, with the number of the row
+     * @throws IOException
+     */
+    public static long read(Reader in, ProjectsManager manager) throws IOException {
+        return read(in, StreamingImport.into(manager));
+    }
+
+    /**
+     * Imports the tasks of all rows into the project with new IDs, in file order.
+     * The project columns are ignored.
+     * @param in
+     * @param project
+     * @return the number of rows read
+     * @throws StreamCorruptedException if the header or a row is invalid
+     * @throws IOException
+     */
+    public static long read(Reader in, Project project) throws IOException {
+        return read(in, StreamingImport.into(project));
+    }
+
+    private static long read(Reader in, StreamingImport.RowSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(in, BUFFER_SIZE);
+        String header = nextRecord(reader);
+        if (header == null || !header.equals(HEADER)) {
+            throw new StreamCorruptedException("Not a projects CSV file, the header is " + header);
+        }
+        return StreamingImport.run(() -> nextRecord(reader), 2, CsvFormat::parseRow, sink);
+    }
+
+    /**
+     * Reads up to the next line break outside quotes, a quoted field may contain line breaks
+     */
+    private static String nextRecord(BufferedReader reader) throws IOException {
+        StringBuilder record = new StringBuilder(128);
+        boolean quoted = false;
+        int c;
+        while ((c = reader.read()) >= 0) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && c == '\n') {
+                int end = record.length();
+                if (end > 0 && record.charAt(end - 1) == '\r') {
+                    record.setLength(end - 1);
+                }
+                return record.toString();
+            }
+            record.append((char) c);
+        }
+        if (quoted) {
+            throw new StreamCorruptedException("Unterminated quoted field at the end of the file");
+        }
+        return record.length() == 0 ? null : record.toString();
+    }
+
+    private static ImportedRow parseRow(String record) {
+        List<String> fields = splitFields(record);
+        if (fields.size() != COLUMNS) {
+            throw new IllegalArgumentException("Expected " + COLUMNS + " fields but found " + fields.size());
+        }
+        String key = fields.get(0);
+        if (key == null) {
+            throw new IllegalArgumentException("Missing project_id");
+        }
+        if (fields.get(1) == null) {
+            throw new IllegalArgumentException("Missing project_title");
+        }
+        LocalDate created = fields.get(3) == null ? null : LocalDate.parse(fields.get(3));
+        if (fields.get(4) == null && fields.get(6) == null) {
+            return ImportedRow.project(key, fields.get(1), fields.get(2), created);
+        }
+        ImportedRow task = ImportedRow.task(key, fields.get(5), TaskPrio.valueOf(fields.get(6)),
+                TaskState.valueOf(fields.get(7)), fields.get(8), LocalDate.parse(fields.get(9)));
+        return task.withProject(fields.get(1), fields.get(2), created);
+    }
+
+    /**
+     *
+     * @return the fields of the record, null for empty fields
+     */
+    static List<String> splitFields(String record) {
+        List<String> fields = new ArrayList<>(COLUMNS);
+        StringBuilder field = new StringBuilder();
+        int i = 0;
+        int length = record.length();
+        while (true) {
+            field.setLength(0);
+            if (i < length && record.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    int quote = record.indexOf('"', i);
+                    if (quote < 0) {
+                        throw new IllegalArgumentException("Unterminated quoted field");
+                    }
+                    field.append(record, i, quote);
+                    i = quote + 1;
+                    if (i < length && record.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                if (i < length && record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Unexpected character after quoted field");
+                }
+                fields.add(field.toString());
+            } else {
+                int comma = record.indexOf(',', i);
+                int end = comma < 0 ? length : comma;
+                fields.add(end == i ? null : record.substring(i, end));
+                i = end;
+            }
+            if (i >= length) {
+                return fields;
+            }
+            i++; // the comma
+            if (i == length) {
+                fields.add(null);
+                return fields;
+            }
+        }
+    }
+
+    private static void appendField(StringBuilder row, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.isEmpty()) {
+            row.append("\"\"");
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private CsvFormat() {}
+}
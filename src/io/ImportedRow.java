@@ -0,0 +1,60 @@
+package io;
+
+import model.TaskPrio;
+import model.TaskState;
+
+import java.time.LocalDate;
+
+/**
+ * One parsed record of an import: a project, a task, or a task together with its project.
+ * Tasks belong to the project with the same key, which is the project ID of the exporting system.
+ */
+
+final class ImportedRow {
+    final String projectKey;
+    final boolean hasProject;
+    final String title;
+    final String description;
+    final LocalDate created;
+    final boolean hasTask;
+    final String taskDescription;
+    final TaskPrio prio;
+    final TaskState state;
+    final String takenBy;
+    final LocalDate lastUpdate;
+
+    private ImportedRow(String projectKey, boolean hasProject, String title, String description, LocalDate created,
+                        boolean hasTask, String taskDescription, TaskPrio prio, TaskState state, String takenBy,
+                        LocalDate lastUpdate) {
+        this.projectKey = projectKey;
+        this.hasProject = hasProject;
+        this.title = title;
+        this.description = description;
+        this.created = created;
+        this.hasTask = hasTask;
+        this.taskDescription = taskDescription;
+        this.prio = prio;
+        this.state = state;
+        this.takenBy = takenBy;
+        this.lastUpdate = lastUpdate;
+    }
+
+    static ImportedRow project(String projectKey, String title, String description, LocalDate created) {
+        return new ImportedRow(projectKey, true, title, description, created, false, null, null, null, null, null);
+    }
+
+    static ImportedRow task(String projectKey, String description, TaskPrio prio, TaskState state, String takenBy,
+                            LocalDate lastUpdate) {
+        return new ImportedRow(projectKey, false, null, null, null, true, description, prio, state, takenBy,
+                lastUpdate);
+    }
+
+    /**
+     *
+     * @return the row with the values of the project added
+     */
+    ImportedRow withProject(String title, String description, LocalDate created) {
+        return new ImportedRow(projectKey, true, title, description, created, hasTask, taskDescription, prio, state,
+                takenBy, lastUpdate);
+    }
+}
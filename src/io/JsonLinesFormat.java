@@ -0,0 +1,299 @@
+package io;
+
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamCorruptedException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports and imports projects as JSON Lines: one object per line, a project line
+ * followed by the lines of its tasks.
+ * <pre>
+ * {"type":"project","id":1,"title":"...","description":"...","created":"2024-01-31"}
+ * {"type":"task","project":1,"id":1,"description":"...","prio":"HIGH","state":"TO_DO","takenBy":null,"lastUpdate":"2024-01-31"}
+ * </pre>
+ * Only flat objects with string, number and null values are read, blank lines are skipped.
+ * Both directions stream, see CsvFormat.
+ */
+
+public final class JsonLinesFormat {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Writes all projects of the manager, see write(Writer, List)
+     * @param out
+     * @param manager
+     * @throws IOException
+     */
+    public static void write(Writer out, ProjectsManager manager) throws IOException {
+        write(out, manager.getProjects());
+    }
+
+    /**
+     * Writes one project, see write(Writer, List)
+     * @param out
+     * @param project
+     * @throws IOException
+     */
+    public static void write(Writer out, Project project) throws IOException {
+        write(out, List.of(project));
+    }
+
+    /**
+     * Writes each project followed by its tasks in natural order.
+     * The writer is flushed but not closed.
+     * @param out
+     * @param projects
+     * @throws IOException
+     */
+    public static void write(Writer out, List<Project> projects) throws IOException {
+        BufferedWriter buffered = new BufferedWriter(out, BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        for (Project project : projects) {
+            line.setLength(0);
+            line.append("{\"type\":\"project\",\"id\":").append(project.getId()).append(",\"title\":");
+            appendString(line, project.getTitle());
+            line.append(",\"description\":");
+            appendString(line, project.getDescription());
+            line.append(",\"created\":");
+            appendString(line, String.valueOf(project.getCreated()));
+            line.append("}\n");
+            buffered.append(line);
+            Iterator<Task> tasks = project.streamTasks(task -> true).iterator();
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                line.setLength(0);
+                line.append("{\"type\":\"task\",\"project\":").append(project.getId())
+                        .append(",\"id\":").append(task.getId()).append(",\"description\":");
+                appendString(line, task.getDescription());
+                line.append(",\"prio\":\"").append(task.getPrio().name())
+                        .append("\",\"state\":\"").append(task.getState().name()).append("\",\"takenBy\":");
+                appendString(line, task.getTakenBy());
+                line.append(",\"lastUpdate\":\"").append(task.getLastUpdate()).append("\"}\n");
+                buffered.append(line);
+            }
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Imports all projects as new projects with new IDs, their tasks with new IDs in file order.
+     * The import is not all or nothing: when a line fails, the projects and tasks of the lines
+     * before it stay in the manager and the lines after it are not read. The error names the
+     * failing line, so the remaining lines can be imported after fixing it.
+     * @param in
+     * @param manager
+     * @return the number of lines read
+     * @throws StreamCorruptedException if a line is invalid, a task does not follow its project
+     * or a project title is already used, with the number of the line
+     * @throws IOException
+     */
+    public static long read(Reader in, ProjectsManager manager) throws IOException {
+        return read(in, StreamingImport.into(manager));
+    }
+
+    /**
+     * Imports all task lines into the project with new IDs, in file order.
+     * Project lines are ignored. Like the import into a manager, tasks of the lines before
+     * a failing line stay in the project.
+     * @param in
+     * @param project
+     * @return the number of lines read
+     * @throws StreamCorruptedException if a line is invalid
+     * @throws IOException
+     */
+    public static long read(Reader in, Project project) throws IOException {
+        return read(in, StreamingImport.into(project));
+    }
+
+    private static long read(Reader in, StreamingImport.RowSink sink) throws IOException {
+        BufferedReader reader = new BufferedReader(in, BUFFER_SIZE);
+        return StreamingImport.run(reader::readLine, 1, JsonLinesFormat::parseLine, sink);
+    }
+
+    private static ImportedRow parseLine(String line) {
+        if (line.isBlank()) {
+            return null;
+        }
+        Map<String, String> values = parseObject(line);
+        String type = values.get("type");
+        if ("project".equals(type)) {
+            return ImportedRow.project(required(values, "id"), required(values, "title"), values.get("description"),
+                    LocalDate.parse(required(values, "created")));
+        }
+        if ("task".equals(type)) {
+            return ImportedRow.task(required(values, "project"), values.get("description"),
+                    TaskPrio.valueOf(required(values, "prio")), TaskState.valueOf(required(values, "state")),
+                    values.get("takenBy"), LocalDate.parse(required(values, "lastUpdate")));
+        }
+        throw new IllegalArgumentException("Unknown type " + type);
+    }
+
+    private static String required(Map<String, String> values, String name) {
+        String value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    /**
+     * Parses a flat JSON object, numbers are kept as their text
+     * @return the values by name, null values included as null
+     */
+    static Map<String, String> parseObject(String line) {
+        Map<String, String> values = new HashMap<>();
+        int[] pos = {skipSpace(line, 0)};
+        expect(line, pos, '{');
+        if (peek(line, pos) == '}') {
+            pos[0]++;
+        } else {
+            while (true) {
+                String name = parseString(line, pos);
+                expect(line, pos, ':');
+                values.put(name, parseValue(line, pos));
+                char next = peek(line, pos);
+                pos[0]++;
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Expected , or } at column " + pos[0]);
+                }
+            }
+        }
+        if (skipSpace(line, pos[0]) != line.length()) {
+            throw new IllegalArgumentException("Unexpected text after the object");
+        }
+        return values;
+    }
+
+    private static String parseValue(String line, int[] pos) {
+        char c = peek(line, pos);
+        if (c == '"') {
+            return parseString(line, pos);
+        }
+        int start = pos[0];
+        int end = start;
+        while (end < line.length() && ",} \t".indexOf(line.charAt(end)) < 0) {
+            end++;
+        }
+        String literal = line.substring(start, end);
+        pos[0] = end;
+        if (literal.equals("null")) {
+            return null;
+        }
+        if (literal.isEmpty() || !(literal.charAt(0) == '-' || Character.isDigit(literal.charAt(0)))) {
+            throw new IllegalArgumentException("Unsupported value " + literal + " at column " + start);
+        }
+        return literal;
+    }
+
+    private static String parseString(String line, int[] pos) {
+        expect(line, pos, '"');
+        StringBuilder value = new StringBuilder();
+        int i = pos[0];
+        while (true) {
+            if (i >= line.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char c = line.charAt(i++);
+            if (c == '"') {
+                break;
+            }
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= line.length()) {
+                throw new IllegalArgumentException("Unterminated string");
+            }
+            char escaped = line.charAt(i++);
+            switch (escaped) {
+                case '"', '\\', '/' -> value.append(escaped);
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' -> {
+                    if (i + 4 > line.length()) {
+                        throw new IllegalArgumentException("Invalid unicode escape");
+                    }
+                    value.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    i += 4;
+                }
+                default -> throw new IllegalArgumentException("Invalid escape \\" + escaped);
+            }
+        }
+        pos[0] = i;
+        return value.toString();
+    }
+
+    private static void expect(String line, int[] pos, char expected) {
+        if (peek(line, pos) != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " at column " + pos[0]);
+        }
+        pos[0]++;
+    }
+
+    /**
+     *
+     * @return the next character that is not white space, the position is moved to it
+     */
+    private static char peek(String line, int[] pos) {
+        pos[0] = skipSpace(line, pos[0]);
+        if (pos[0] >= line.length()) {
+            throw new IllegalArgumentException("Unexpected end of line");
+        }
+        return line.charAt(pos[0]);
+    }
+
+    private static int skipSpace(String line, int pos) {
+        while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    private JsonLinesFormat() {}
+}
@@ -0,0 +1,184 @@
+package io;
+
+import exception.TitleNotUniqueException;
+import model.Project;
+import model.ProjectsManager;
+import model.TaskLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Opens files written by ProjectsBinaryFormat without reading the tasks.
+ * Only the header and the directory at the end of the file are read, every project gets
+ * its summary from the directory and loads its tasks from a memory-mapped region of
+ * the file the first time they are needed. Opening is therefore independent of the
+ * number of tasks, and projects that are never opened are never decoded.
+ *
+ * Compressed files are opened the same way, a block is decompressed when its project loads.
+ *
+ * The file stays open while any project or snapshot may still read from it and is closed
+ * when the store becomes unreachable. Saving replaces the file atomically, so an open
+ * store keeps reading the data it was opened with.
+ */
+
+public class MappedProjectStore {
+    private static final int TRAILER_SIZE = Long.BYTES;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final FileChannel channel;
+    private final ProjectsBinaryFormat.Schema schema;
+    private boolean deferred; // true if any project reads its tasks from the file
+
+    private MappedProjectStore(FileChannel channel, ProjectsBinaryFormat.Schema schema) {
+        this.channel = channel;
+        this.schema = schema;
+    }
+
+    /**
+     * Reads the projects of the file, their tasks are loaded when first used
+     * @param file a file written by ProjectsBinaryFormat
+     * @return the projects, in the order they were written
+     * @throws StreamCorruptedException if the file is not in this format or is damaged
+     * @throws IOException
+     */
+    public static List<Project> open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ProjectsBinaryFormat.Schema schema = ProjectsBinaryFormat.readHeader(new ChannelReader(channel));
+            long size = channel.size();
+            if (size < TRAILER_SIZE) {
+                throw new StreamCorruptedException("Missing project directory");
+            }
+            long directoryOffset = new ChannelReader(
+                    channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE)).readFixedLong();
+            if (directoryOffset < 0 || directoryOffset > size - TRAILER_SIZE) {
+                throw new StreamCorruptedException("Invalid project directory offset " + directoryOffset);
+            }
+            ChannelReader directory = new ChannelReader(channel.map(FileChannel.MapMode.READ_ONLY,
+                    directoryOffset, size - TRAILER_SIZE - directoryOffset));
+            if (schema.compressed) {
+                schema = schema.compressed(CompressedBlocks.readNames(directory));
+            }
+            MappedProjectStore store = new MappedProjectStore(channel, schema);
+            List<Project> projects = store.readDirectory(directory, directoryOffset);
+            if (store.deferred) {
+                CLEANER.register(store, () -> closeQuietly(channel));
+            } else {
+                channel.close();
+            }
+            return projects;
+        } catch (IllegalArgumentException | TitleNotUniqueException e) {
+            channel.close();
+            throw ProjectsBinaryFormat.corrupted(e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the directory, tasks blocks end before the blocksEnd offset
+     */
+    private List<Project> readDirectory(ChannelReader in, long blocksEnd) throws IOException {
+        ProjectsManager restored = new ProjectsManager();
+        int projectCount = in.readVarInt();
+        for (int i = 0; i < projectCount; i++) {
+            int id = in.readVarInt();
+            String title = in.readString();
+            String description = in.readString();
+            LocalDate created = in.readDate();
+            int nextTaskId = in.readVarInt();
+            int taskCount = in.readVarInt();
+            int doneCount = in.readVarInt();
+            LocalDate lastUpdated = in.readDate();
+            long offset = in.readSignedVarLong();
+            long length = in.readSignedVarLong();
+            if (offset < 0 || length < 0 || offset + length > blocksEnd
+                    || taskCount < 0 || doneCount < 0 || doneCount > taskCount) {
+                throw new StreamCorruptedException("Invalid task block of project " + id);
+            }
+            Project project = restored.restoreProject(id, title, description, created, nextTaskId);
+            if (taskCount > 0) {
+                project.deferTasks(new StoredTasks(offset, length, taskCount, doneCount, lastUpdated),
+                        taskCount, doneCount, lastUpdated);
+                deferred = true;
+            }
+        }
+        return restored.getProjects();
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to read from it
+        }
+    }
+
+    /**
+     * The tasks of one project, still in the file
+     */
+    final class StoredTasks extends ProjectsBinaryFormat.Block implements TaskLoader {
+        StoredTasks(long offset, long length, int taskCount, int doneCount, LocalDate lastUpdated) {
+            super(offset, length, taskCount, doneCount, lastUpdated);
+        }
+
+        @Override
+        public void loadTasks(Project project) {
+            try {
+                try {
+                    ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                    if (schema.compressed) {
+                        CompressedBlocks.readBlock(block, schema, taskCount, project);
+                        return;
+                    }
+                    ChannelReader in = new ChannelReader(block);
+                    for (int i = 0; i < taskCount; i++) {
+                        ProjectsBinaryFormat.readTask(in, schema, project);
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw ProjectsBinaryFormat.corrupted(e);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         *
+         * @param compressor of the new file, null if it is not compressed
+         * @return true if the encoded tasks can be copied unchanged to the new file
+         */
+        boolean canCopy(CompressedBlocks compressor) {
+            if (!schema.isCurrent()) {
+                return false;
+            }
+            return compressor == null ? !schema.compressed : compressor.canCopy(schema.takenByNames);
+        }
+
+        boolean isCompressed() {
+            return schema.compressed;
+        }
+
+        /**
+         *
+         * @return the names the block's takenBy references point to, null if not compressed
+         */
+        String[] takenByNames() {
+            return schema.takenByNames;
+        }
+
+        void copyTo(ChannelWriter out) throws IOException {
+            out.transferFrom(channel, offset, length);
+        }
+    }
+}
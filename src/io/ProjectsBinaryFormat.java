@@ -0,0 +1,449 @@
+package io;
+
+import exception.TitleNotUniqueException;
+import model.Project;
+import model.ProjectSnapshot;
+import model.ProjectsManager;
+import model.ProjectsSnapshot;
+import model.Task;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact, versioned binary format for lists of projects.
+ *
+ * Layout, counts and ids as varints, dates as epoch days:
+ * magic "PRJS", format version, checkpoint number, flags and the names of TaskState and TaskPrio
+ * in ordinal order, then one block per project holding its tasks, then a directory and finally the
+ * offset of the directory as a fixed 8 byte long at the end of the file.
+ * Files with the COMPRESSED flag have Deflate compressed blocks and a table of takenBy names
+ * right before the directory, the trailer then holds the offset of the table, see CompressedBlocks.
+ * The directory holds, per project, its id, title, description, created, next task id,
+ * task count, done task count, last update and the offset and length of its block.
+ * A task is its id, description, one byte with state and priority ordinals,
+ * lastUpdate and takenBy.
+ *
+ * The directory lets a single project's tasks be read without reading the others,
+ * see MappedProjectStore. The enum names in the header let files be read after the
+ * enums are reordered or extended. The checkpoint number tells a WriteAheadLog which
+ * logged changes the file already contains. Version 1 files, without blocks and directory,
+ * version 2 files, without checkpoint number, and version 3 files, without flags, are still read.
+ */
+
+public class ProjectsBinaryFormat {
+    static final byte[] MAGIC = {'P', 'R', 'J', 'S'};
+    static final int VERSION = 4;
+    static final int COMPRESSED = 1;
+    private static final int VERSION_WITHOUT_DIRECTORY = 1;
+    private static final int VERSION_WITHOUT_CHECKPOINT = 2;
+    private static final int VERSION_WITHOUT_FLAGS = 3;
+
+    /**
+     * Writes the projects and their tasks to the file, replacing its content.
+     * The data is written to a temporary file that atomically replaces the file when complete,
+     * so the file is never left half written. Tasks of projects that were loaded from a
+     * MappedProjectStore and never used are copied from the old file without decoding them.
+     * @param file
+     * @param projects
+     * @throws IOException
+     */
+    public static void write(File file, List<Project> projects) throws IOException {
+        write(file, projects, 0);
+    }
+
+    /**
+     * Writes the projects like write(file, projects), marked with a checkpoint number
+     * @param file
+     * @param projects
+     * @param checkpoint see readCheckpoint
+     * @throws IOException
+     */
+    public static void write(File file, List<Project> projects, long checkpoint) throws IOException {
+        write(file, projects, checkpoint, false);
+    }
+
+    /**
+     * Writes the projects like write(file, projects, checkpoint), optionally compressed.
+     * Compressed files are typically several times smaller, at the cost of decompressing
+     * a project's block when its tasks are loaded.
+     * @param file
+     * @param projects
+     * @param checkpoint see readCheckpoint
+     * @param compressed true to compress each project's block, see CompressedBlocks
+     * @throws IOException
+     */
+    public static void write(File file, List<Project> projects, long checkpoint, boolean compressed)
+            throws IOException {
+        write(file, ProjectsSnapshot.of(projects), checkpoint, compressed);
+    }
+
+    /**
+     * Writes a captured snapshot like write(file, projects), may run on any thread.
+     * Each project of the snapshot is released once written.
+     * @param file
+     * @param snapshot see ProjectsManager.captureSnapshot
+     * @param checkpoint see readCheckpoint
+     * @throws IOException
+     */
+    public static void write(File file, ProjectsSnapshot snapshot, long checkpoint) throws IOException {
+        write(file, snapshot, checkpoint, false);
+    }
+
+    /**
+     * Writes a captured snapshot like write(file, snapshot, checkpoint), optionally compressed
+     * @param file
+     * @param snapshot see ProjectsManager.captureSnapshot
+     * @param checkpoint see readCheckpoint
+     * @param compressed see write(file, projects, checkpoint, compressed)
+     * @throws IOException
+     */
+    public static void write(File file, ProjectsSnapshot snapshot, long checkpoint, boolean compressed)
+            throws IOException {
+        List<ProjectSnapshot> projects = snapshot.getProjects();
+        ProjectsFileIO.replaceAtomically(file, temp -> {
+            CompressedBlocks compressor = compressed ? new CompressedBlocks(copyableNames(projects)) : null;
+            try (ChannelWriter out = new ChannelWriter(FileChannel.open(temp, StandardOpenOption.WRITE))) {
+                writeHeader(out, checkpoint, compressed ? COMPRESSED : 0);
+                List<Block> blocks = new ArrayList<>(projects.size());
+                for (ProjectSnapshot project : projects) {
+                    blocks.add(writeBlock(out, project, compressor));
+                }
+                long directoryOffset = out.position();
+                if (compressor != null) {
+                    compressor.writeNames(out);
+                }
+                out.writeVarInt(projects.size());
+                for (int i = 0; i < projects.size(); i++) {
+                    writeDirectoryEntry(out, projects.get(i), blocks.get(i));
+                }
+                out.writeFixedLong(directoryOffset);
+                out.sync();
+            } finally {
+                if (compressor != null) {
+                    compressor.end();
+                }
+            }
+        });
+    }
+
+    /**
+     *
+     * @return the names of the first compressed file a project's tasks are still stored in, or null
+     */
+    private static String[] copyableNames(List<ProjectSnapshot> projects) {
+        for (ProjectSnapshot project : projects) {
+            if (project.getTaskLoader() instanceof MappedProjectStore.StoredTasks stored && stored.isCompressed()) {
+                return stored.takenByNames();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads projects written by write. Projects from current files load their tasks
+     * on first use, see MappedProjectStore, older files are read completely.
+     * @param file
+     * @return the projects, in the order they were written
+     * @throws StreamCorruptedException if the file is not in this format or is damaged
+     * @throws IOException
+     */
+    public static List<Project> read(File file) throws IOException {
+        int version;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ChannelReader in = new ChannelReader(channel);
+            Schema schema = readHeader(in);
+            version = schema.version;
+            if (version == VERSION_WITHOUT_DIRECTORY) {
+                return readWithoutDirectory(in, schema);
+            }
+        } catch (IllegalArgumentException | TitleNotUniqueException e) {
+            throw corrupted(e);
+        }
+        return MappedProjectStore.open(file);
+    }
+
+    /**
+     * Reads the checkpoint number the file was written with, without reading the projects
+     * @param file
+     * @return the checkpoint number, 0 for files written without one
+     * @throws StreamCorruptedException if the file is not in this format
+     * @throws IOException
+     */
+    public static long readCheckpoint(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readHeader(new ChannelReader(channel)).checkpoint;
+        } catch (IllegalArgumentException e) {
+            throw corrupted(e);
+        }
+    }
+
+    /**
+     *
+     * @param file
+     * @return true if the file was written compressed
+     * @throws StreamCorruptedException if the file is not in this format
+     * @throws IOException
+     */
+    public static boolean isCompressed(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return readHeader(new ChannelReader(channel)).compressed;
+        } catch (IllegalArgumentException e) {
+            throw corrupted(e);
+        }
+    }
+
+    /**
+     *
+     * @param file
+     * @return true if the file starts with the magic bytes of this format
+     * @throws IOException
+     */
+    public static boolean isBinaryFormat(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(MAGIC.length);
+            while (start.hasRemaining() && channel.read(start) >= 0) {
+                // keep reading until the magic is complete or the file ends
+            }
+            return !start.hasRemaining() && Arrays.equals(start.array(), MAGIC);
+        }
+    }
+
+    static StreamCorruptedException corrupted(RuntimeException cause) {
+        StreamCorruptedException corrupted = new StreamCorruptedException("Invalid project data: " + cause.getMessage());
+        corrupted.initCause(cause);
+        return corrupted;
+    }
+
+    static void writeHeader(ChannelWriter out, long checkpoint, int flags) throws IOException {
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeVarInt(VERSION);
+        out.writeSignedVarLong(checkpoint);
+        out.writeVarInt(flags);
+        writeEnumNames(out);
+    }
+
+    /**
+     * Writes the names of TaskState and TaskPrio in ordinal order
+     */
+    static void writeEnumNames(ChannelWriter out) throws IOException {
+        out.writeVarInt(TaskState.values().length);
+        for (TaskState state : TaskState.values()) {
+            out.writeString(state.name());
+        }
+        out.writeVarInt(TaskPrio.values().length);
+        for (TaskPrio prio : TaskPrio.values()) {
+            out.writeString(prio.name());
+        }
+    }
+
+    /**
+     * Writes the tasks of the project, copying them unchanged if they were never loaded
+     * @param compressor null for uncompressed files
+     */
+    static Block writeBlock(ChannelWriter out, ProjectSnapshot project, CompressedBlocks compressor)
+            throws IOException {
+        long offset = out.position();
+        if (project.getTaskLoader() instanceof MappedProjectStore.StoredTasks stored && stored.canCopy(compressor)) {
+            stored.copyTo(out);
+        } else if (compressor != null) {
+            compressor.writeBlock(out, project.getTasks());
+        } else {
+            for (Task task : project.getTasks()) {
+                writeTask(out, task);
+            }
+        }
+        project.release();
+        return new Block(offset, out.position() - offset, project.getTaskCount(), project.getDoneCount(),
+                project.getLastUpdated());
+    }
+
+    static void writeDirectoryEntry(ChannelWriter out, ProjectSnapshot project, Block block) throws IOException {
+        out.writeVarInt(project.getId());
+        out.writeString(project.getTitle());
+        out.writeString(project.getDescription());
+        out.writeSignedVarLong(project.getCreated().toEpochDay());
+        out.writeVarInt(project.getNextTaskId());
+        out.writeVarInt(block.taskCount);
+        out.writeVarInt(block.doneCount);
+        out.writeSignedVarLong(block.lastUpdated.toEpochDay());
+        out.writeSignedVarLong(block.offset);
+        out.writeSignedVarLong(block.length);
+    }
+
+    static void writeTask(ChannelWriter out, Task task) throws IOException {
+        out.writeVarInt(task.getId());
+        out.writeString(task.getDescription());
+        out.writeByte(task.getState().ordinal() << 4 | task.getPrio().ordinal());
+        out.writeSignedVarLong(task.getLastUpdate().toEpochDay());
+        out.writeString(task.getTakenBy());
+    }
+
+    static Schema readHeader(ChannelReader in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readBytes(magic, 0, magic.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new StreamCorruptedException("Not a project data file");
+        }
+        int version = in.readVarInt();
+        if (version < 1 || version > VERSION) {
+            throw new StreamCorruptedException("Unsupported project data version " + version);
+        }
+        long checkpoint = version > VERSION_WITHOUT_CHECKPOINT ? in.readSignedVarLong() : 0;
+        int flags = version > VERSION_WITHOUT_FLAGS ? in.readVarInt() : 0;
+        Schema schema = readEnumNames(in, version, checkpoint);
+        return (flags & COMPRESSED) != 0 ? schema.compressed(null) : schema;
+    }
+
+    /**
+     * Reads the names written by writeEnumNames
+     */
+    static Schema readEnumNames(ChannelReader in, int version, long checkpoint) throws IOException {
+        TaskState[] states = new TaskState[in.readLength()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = TaskState.valueOf(in.readString());
+        }
+        TaskPrio[] prios = new TaskPrio[in.readLength()];
+        for (int i = 0; i < prios.length; i++) {
+            prios[i] = TaskPrio.valueOf(in.readString());
+        }
+        return new Schema(version, checkpoint, states, prios, false, null);
+    }
+
+    private static List<Project> readWithoutDirectory(ChannelReader in, Schema schema) throws IOException {
+        ProjectsManager restored = new ProjectsManager();
+        int projectCount = in.readVarInt();
+        for (int i = 0; i < projectCount; i++) {
+            int id = in.readVarInt();
+            String title = in.readString();
+            String description = in.readString();
+            LocalDate created = in.readDate();
+            int nextTaskId = in.readVarInt();
+            Project project = restored.restoreProject(id, title, description, created, nextTaskId);
+            int taskCount = in.readVarInt();
+            for (int j = 0; j < taskCount; j++) {
+                readTask(in, schema, project);
+            }
+        }
+        return restored.getProjects();
+    }
+
+    static Task readTask(ChannelReader in, Schema schema, Project project) throws IOException {
+        return readTask(in, schema, project, false);
+    }
+
+    /**
+     * Reads a task written by writeTask and restores it into the project
+     * @param skipExisting true to skip the task if the project already has its ID
+     * @return the restored task, or null if skipped
+     */
+    static Task readTask(ChannelReader in, Schema schema, Project project, boolean skipExisting) throws IOException {
+        int id = in.readVarInt();
+        String description = in.readString();
+        if (description == null) {
+            throw new StreamCorruptedException("Missing task description");
+        }
+        int stateAndPrio = in.readByte();
+        LocalDate lastUpdate = in.readDate();
+        String takenBy = in.readString();
+        if (skipExisting && project.getTaskById(id) != null) {
+            return null;
+        }
+        return project.restoreTask(id, description, schema.prio(stateAndPrio & 0x0F),
+                schema.state(stateAndPrio >>> 4), takenBy, lastUpdate);
+    }
+
+    /**
+     * Where a project's tasks are stored and a summary of them
+     */
+    static class Block {
+        final long offset;
+        final long length;
+        final int taskCount;
+        final int doneCount;
+        final LocalDate lastUpdated;
+
+        Block(long offset, long length, int taskCount, int doneCount, LocalDate lastUpdated) {
+            this.offset = offset;
+            this.length = length;
+            this.taskCount = taskCount;
+            this.doneCount = doneCount;
+            this.lastUpdated = lastUpdated;
+        }
+    }
+
+    /**
+     * The header of the file: its version, checkpoint and enum constants by the ordinals used in it,
+     * and for compressed files the table of takenBy names
+     */
+    static final class Schema {
+        final int version;
+        final long checkpoint;
+        final boolean compressed;
+        final String[] takenByNames;
+        private final TaskState[] states;
+        private final TaskPrio[] prios;
+
+        Schema(int version, long checkpoint, TaskState[] states, TaskPrio[] prios, boolean compressed,
+               String[] takenByNames) {
+            this.version = version;
+            this.checkpoint = checkpoint;
+            this.states = states;
+            this.prios = prios;
+            this.compressed = compressed;
+            this.takenByNames = takenByNames;
+        }
+
+        /**
+         *
+         * @return the schema of a compressed file with the table of names
+         */
+        Schema compressed(String[] takenByNames) {
+            return new Schema(version, checkpoint, states, prios, true, takenByNames);
+        }
+
+        String takenBy(int reference) throws StreamCorruptedException {
+            if (reference == 0) {
+                return null;
+            }
+            if (takenByNames == null || reference > takenByNames.length) {
+                throw new StreamCorruptedException("Unknown takenBy name " + reference);
+            }
+            return takenByNames[reference - 1];
+        }
+
+        TaskState state(int ordinal) throws StreamCorruptedException {
+            if (ordinal >= states.length) {
+                throw new StreamCorruptedException("Unknown task state " + ordinal);
+            }
+            return states[ordinal];
+        }
+
+        /**
+         *
+         * @return true if the file uses the same ordinals as the current enums
+         */
+        boolean isCurrent() {
+            return Arrays.equals(states, TaskState.values()) && Arrays.equals(prios, TaskPrio.values());
+        }
+
+        TaskPrio prio(int ordinal) throws StreamCorruptedException {
+            if (ordinal >= prios.length) {
+                throw new StreamCorruptedException("Unknown task priority " + ordinal);
+            }
+            return prios[ordinal];
+        }
+    }
+
+    private ProjectsBinaryFormat() {}
+}
@@ -1,9 +1,26 @@
 package io;
 
 import model.Project;
+import model.ProjectsManager;
+import model.ProjectsSnapshot;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * Hints on how to implement serialization and deserialization
@@ -11,16 +28,165 @@ import java.util.List;
  */
 
 public class ProjectsFileIO {
+    // writes the background saves one at a time, in the order they were started; the thread
+    // is not a daemon so a save in progress completes before the JVM exits, and it ends when idle
+    private static final ExecutorService WRITER = writer();
+
+    private static ExecutorService writer() {
+        ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                task -> new Thread(task, "snapshot-writer"));
+        writer.allowCoreThreadTimeOut(true);
+        return writer;
+    }
+
     /**
      * Call this method before the application exits, to store the users and projects,
-     * in serialized form.
+     * in serialized form. The file is replaced atomically, an interrupted save leaves it unchanged.
      */
     public static void serializeToFile(File file, List<Project> data) throws IOException {
-        try (FileOutputStream fileOut = new FileOutputStream(file);
-             ObjectOutputStream objectOut = new ObjectOutputStream(fileOut)) {
+        replaceAtomically(file, temp -> {
+            try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                 ObjectOutputStream objectOut = new ObjectOutputStream(fileOut)) {
+
+                objectOut.writeObject(data);
+                objectOut.flush();
+                fileOut.getFD().sync();
+            }
+        });
+    }
+
+    /**
+     * Stores the projects in the compact binary format, see ProjectsBinaryFormat.
+     * Preferred over serializeToFile, it is smaller, faster and not tied to the class layout.
+     */
+    public static void saveToFile(File file, List<Project> data) throws IOException {
+        ProjectsBinaryFormat.write(file, data);
+    }
+
+    /**
+     * Stores the projects like saveToFile, with each project's tasks compressed when compressed is true.
+     * Compressed files take less space and less time to read from slow disks, loadFromFile reads both.
+     */
+    public static void saveToFile(File file, List<Project> data, boolean compressed) throws IOException {
+        ProjectsBinaryFormat.write(file, data, 0, compressed);
+    }
+
+    /**
+     * Captures the projects of the manager now and stores them like saveToFile on a background thread,
+     * see ProjectsManager.captureSnapshot. The projects can keep changing while the file is written,
+     * the file gets the projects as they were when this method was called.
+     * Background saves are written one at a time, a save started while another is written waits for it.
+     * @return completes when the file is replaced, or with the error that stopped the writing
+     */
+    public static CompletableFuture<Void> saveInBackground(File file, ProjectsManager manager) {
+        ProjectsSnapshot snapshot = manager.captureSnapshot();
+        return saveInBackground(file, () -> snapshot, 0, false);
+    }
+
+    /**
+     * Captures a snapshot and writes it on a background thread
+     * @param capture called on the background thread
+     */
+    static CompletableFuture<Void> saveInBackground(File file, Supplier<ProjectsSnapshot> capture, long checkpoint,
+                                                    boolean compressed) {
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        WRITER.execute(() -> {
+            Throwable error = null;
+            ProjectsSnapshot snapshot = null;
+            try {
+                snapshot = capture.get();
+                ProjectsBinaryFormat.write(file, snapshot, checkpoint, compressed);
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                if (snapshot != null) {
+                    snapshot.release(); // before completing, so the next snapshot can be captured
+                }
+            }
+            if (error == null) {
+                saved.complete(null);
+            } else {
+                saved.completeExceptionally(error);
+            }
+        });
+        return saved;
+    }
+
+    /**
+     * Writes a file's content to a temporary file in the same directory
+     */
+    interface FileContent {
+        void writeTo(Path temp) throws IOException;
+    }
+
+    /**
+     * Writes the content to a temporary file that then atomically replaces the file,
+     * so readers and crashes only ever see the old or the complete new content.
+     * The new file keeps the permissions of the file it replaces, and the directory is
+     * forced to disk after the rename, so the replacement itself survives a crash
+     * @param file
+     * @param content must force the written data to disk
+     * @throws IOException
+     */
+    static void replaceAtomically(File file, FileContent content) throws IOException {
+        Path target = file.toPath().toAbsolutePath();
+        Path temp = createTemp(target);
+        try {
+            copyPermissions(target, temp);
+            content.writeTo(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        forceDirectory(target.getParent());
+    }
+
+    /**
+     * Creates an empty file next to the target, with the default permissions of new files
+     * rather than the owner-only ones of Files.createTempFile
+     */
+    private static Path createTemp(Path target) throws IOException {
+        while (true) {
+            Path temp = target.resolveSibling(target.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // taken by another save, try another name
+            }
+        }
+    }
+
+    private static void copyPermissions(Path from, Path to) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(to, PosixFileAttributeView.class);
+        if (view == null || !Files.exists(from)) {
+            return;
+        }
+        PosixFileAttributes attributes = Files.readAttributes(from, PosixFileAttributes.class);
+        view.setPermissions(attributes.permissions());
+    }
 
-            objectOut.writeObject(data);
+    private static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // some platforms, such as Windows, cannot open directories, the rename is durable there
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Loads projects stored either by saveToFile or by serializeToFile,
+     * so files written with Java serialization can still be read and migrated.
+     */
+    public static List<Project> loadFromFile(File file) throws IOException, ClassNotFoundException {
+        if (ProjectsBinaryFormat.isBinaryFormat(file)) {
+            return ProjectsBinaryFormat.read(file);
         }
+        return deSerializeFromFile(file);
     }
 
     /**
@@ -0,0 +1,194 @@
+package io;
+
+import exception.TitleNotUniqueException;
+import model.Project;
+import model.ProjectsManager;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Imports records read one by one: batches of records are parsed in parallel on the
+ * common ForkJoinPool while the calling thread reads the next batches, and the parsed rows
+ * are applied on the calling thread in input order. Only a few batches per core are in
+ * memory at a time, so memory use does not depend on the size of the input.
+ */
+
+final class StreamingImport {
+    static final int BATCH_SIZE = 2048;
+
+    /**
+     * Reads the next record, or returns null at the end of the input
+     */
+    interface RecordReader {
+        String next() throws IOException;
+    }
+
+    /**
+     * Parses one record, or returns null for records without data such as blank lines.
+     * Throws IllegalArgumentException or DateTimeException for invalid records
+     */
+    interface RecordParser {
+        ImportedRow parse(String record);
+    }
+
+    /**
+     * Applies parsed rows in input order
+     */
+    interface RowSink {
+        void accept(ImportedRow row) throws IOException;
+    }
+
+    /**
+     * Parsed rows of one batch
+     */
+    private static final class Batch {
+        final long firstRecord;
+        final List<ImportedRow> rows;
+
+        Batch(long firstRecord, List<ImportedRow> rows) {
+            this.firstRecord = firstRecord;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Reads, parses and applies all records
+     * @param reader
+     * @param firstRecord the number of the first record, used in error messages
+     * @param parser called on several threads at once
+     * @param sink called on this thread
+     * @return the number of records
+     * @throws StreamCorruptedException if a record is invalid or cannot be applied, with its number.
+     * The rows before it have been applied.
+     * @throws IOException
+     */
+    static long run(RecordReader reader, long firstRecord, RecordParser parser, RowSink sink) throws IOException {
+        int window = 2 * ForkJoinPool.getCommonPoolParallelism();
+        Deque<CompletableFuture<Batch>> parsing = new ArrayDeque<>();
+        long recordNumber = firstRecord;
+        try {
+            while (true) {
+                List<String> records = new ArrayList<>(BATCH_SIZE);
+                String record;
+                while (records.size() < BATCH_SIZE && (record = reader.next()) != null) {
+                    records.add(record);
+                }
+                if (records.isEmpty()) {
+                    break;
+                }
+                long batchStart = recordNumber;
+                parsing.add(CompletableFuture.supplyAsync(() -> parse(records, batchStart, parser)));
+                recordNumber += records.size();
+                if (parsing.size() >= window) {
+                    apply(parsing.poll(), sink);
+                }
+            }
+            while (!parsing.isEmpty()) {
+                apply(parsing.poll(), sink);
+            }
+        } finally {
+            for (CompletableFuture<Batch> batch : parsing) {
+                batch.cancel(false);
+            }
+        }
+        return recordNumber - firstRecord;
+    }
+
+    private static Batch parse(List<String> records, long firstRecord, RecordParser parser) {
+        List<ImportedRow> rows = new ArrayList<>(records.size());
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                rows.add(parser.parse(records.get(i)));
+            } catch (RuntimeException e) {
+                throw new UncheckedIOException(invalid(firstRecord + i, e));
+            }
+        }
+        return new Batch(firstRecord, rows);
+    }
+
+    private static void apply(CompletableFuture<Batch> parsed, RowSink sink) throws IOException {
+        Batch batch;
+        try {
+            batch = parsed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+        for (int i = 0; i < batch.rows.size(); i++) {
+            ImportedRow row = batch.rows.get(i);
+            if (row == null) {
+                continue;
+            }
+            try {
+                sink.accept(row);
+            } catch (IllegalArgumentException | IllegalStateException | TitleNotUniqueException e) {
+                throw invalid(batch.firstRecord + i, e);
+            }
+        }
+    }
+
+    private static StreamCorruptedException invalid(long record, RuntimeException cause) {
+        StreamCorruptedException invalid = new StreamCorruptedException(
+                "Invalid import data at record " + record + ": " + cause.getMessage());
+        invalid.initCause(cause);
+        return invalid;
+    }
+
+    /**
+     * Adds the imported projects to the manager as new projects with new IDs, and their tasks
+     * with new IDs in input order. Rows of a project must follow each other.
+     * @param manager
+     * @return the sink
+     * Throws TitleNotUniqueException from the sink if an imported title is already used
+     */
+    static RowSink into(ProjectsManager manager) {
+        return new RowSink() {
+            private String currentKey;
+            private Project current;
+
+            @Override
+            public void accept(ImportedRow row) throws IOException {
+                if (row.hasProject && (current == null || !row.projectKey.equals(currentKey))) {
+                    current = manager.addProject(row.title, row.description, row.created);
+                    currentKey = row.projectKey;
+                }
+                if (row.hasTask) {
+                    if (current == null || !row.projectKey.equals(currentKey)) {
+                        throw new IllegalStateException("Task of project " + row.projectKey + " does not follow it");
+                    }
+                    addTask(current, row);
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds the imported tasks to the project with new IDs in input order, projects are ignored
+     * @param project
+     * @return the sink
+     */
+    static RowSink into(Project project) {
+        return row -> {
+            if (row.hasTask) {
+                addTask(project, row);
+            }
+        };
+    }
+
+    private static void addTask(Project project, ImportedRow row) {
+        project.addTask(row.taskDescription, row.prio, row.state, row.takenBy, row.lastUpdate);
+    }
+
+    private StreamingImport() {}
+}
@@ -0,0 +1,707 @@
+package io;
+
+import exception.TitleNotUniqueException;
+import model.ChangeListener;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskBatch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of the changes to a ProjectsManager, kept next to a snapshot file.
+ * Every change reported to the ChangeListener is appended to the log as a small record,
+ * so a crash loses at most the changes not yet forced to disk instead of the whole session.
+ *
+ * Records are collected in memory and written by a background thread, which forces the
+ * log to disk once for all records collected while the previous write was in progress
+ * (group commit). sync waits until all changes made so far are on disk.
+ * When the log grows past the compaction size it is compacted in the background: the log
+ * is renamed to an old log and a new log is started, then another thread captures a snapshot
+ * of the projects (see ProjectsManager.captureSnapshot) and writes it to the snapshot file,
+ * and when the snapshot file is replaced the old log is deleted.
+ * Snapshots are written compressed if the snapshot file the log was opened with is compressed.
+ * Changes go on during the compaction, from any number of threads, and are logged to the new log.
+ *
+ * Every log starts with the checkpoint number of the snapshot it continues, and snapshots
+ * are marked with the number of the log that continues them. Recovery replays the old log
+ * and the log only when their numbers continue the snapshot's.
+ * Since the snapshot is captured after the new log started, project by project, it may already
+ * contain the first changes of the new log. Changes are reported holding the project's lock,
+ * so each project's records are in the order of its changes, and replaying them over a later
+ * state of the project ends in the same state: records for tasks and projects that are already
+ * added or already removed are skipped, values are set absolutely.
+ * Each record is its length, its content and a CRC32 of the content, a torn record at the
+ * end of the log is dropped on recovery.
+ */
+
+public class WriteAheadLog implements ChangeListener, Closeable {
+    public static final long DEFAULT_COMPACTION_SIZE = 16L << 20;
+
+    private static final byte[] MAGIC = {'P', 'R', 'J', 'L'};
+    private static final int VERSION = 1;
+
+    private static final int ADD_PROJECT = 1;
+    private static final int REMOVE_PROJECT = 2;
+    private static final int ADD_TASK = 3;
+    private static final int REMOVE_TASK = 4;
+    private static final int SET_STATE = 5;
+    private static final int SET_PRIO = 6;
+    private static final int SET_TAKEN_BY = 7;
+    private static final int BATCH = 8;
+
+    private final ProjectsManager manager;
+    private final File snapshotFile;
+    private final File logFile;
+    private final File oldLogFile; // log before the compaction in progress
+    private final long compactionSize;
+    private final boolean compressed; // true to keep writing the snapshot compressed
+    private final Object lock = new Object(); // guards all fields below
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final ChannelWriter recordOut = new ChannelWriter(Channels.newChannel(record));
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(); // records not yet written
+    private final DataOutputStream pendingOut = new DataOutputStream(pending);
+    private final Thread flusher;
+    private FileChannel channel;
+    private long checkpoint;
+    private long logSize; // bytes written to the log file
+    private long appended; // number of records appended
+    private long durable; // number of records forced to disk
+    private IOException failure;
+    private boolean closed;
+    private CompletableFuture<Void> compaction; // the last background compaction, or null
+    private boolean oldLogNeeded; // true while the old log continues the snapshot file
+
+    /**
+     * A record's content
+     */
+    private interface Record {
+        void writeTo(ChannelWriter out) throws IOException;
+    }
+
+    private WriteAheadLog(ProjectsManager manager, File snapshotFile, File logFile, long compactionSize,
+                          boolean compressed, boolean oldLogNeeded, long checkpoint, long validLogSize)
+            throws IOException {
+        this.manager = manager;
+        this.snapshotFile = snapshotFile;
+        this.logFile = logFile;
+        this.oldLogFile = oldLogFile(logFile);
+        this.compactionSize = compactionSize;
+        this.compressed = compressed;
+        this.oldLogNeeded = oldLogNeeded;
+        this.checkpoint = checkpoint;
+        if (validLogSize < 0) {
+            startLog();
+        } else {
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+            channel.truncate(validLogSize); // drop a torn record
+            channel.position(validLogSize);
+            logSize = validLogSize;
+        }
+        this.flusher = new Thread(this::flushLoop, "write-ahead-log");
+        flusher.setDaemon(true);
+        flusher.start();
+        manager.setChangeListener(this);
+    }
+
+    /**
+     * Recovers the projects from the snapshot file and the log file next to it, named
+     * like the snapshot with ".log" appended, and starts logging their changes.
+     * @param snapshotFile
+     * @return the log, see getProjectsManager
+     * @throws StreamCorruptedException if the snapshot or the log is damaged
+     * @throws IOException
+     * @throws ClassNotFoundException if the snapshot is a Java serialized file that cannot be read
+     */
+    public static WriteAheadLog open(File snapshotFile) throws IOException, ClassNotFoundException {
+        return open(snapshotFile, new File(snapshotFile.getPath() + ".log"), DEFAULT_COMPACTION_SIZE);
+    }
+
+    /**
+     * Recovers the projects by loading the snapshot file, if it exists, and replaying the
+     * changes in the log file on top of it, then starts logging their changes.
+     * @param snapshotFile a file read by ProjectsFileIO.loadFromFile
+     * @param logFile
+     * @param compactionSize the log size in bytes that makes the log compact into the snapshot
+     * @return the log, see getProjectsManager
+     * @throws StreamCorruptedException if the snapshot or the log is damaged
+     * @throws IOException
+     * @throws ClassNotFoundException if the snapshot is a Java serialized file that cannot be read
+     */
+    public static WriteAheadLog open(File snapshotFile, File logFile, long compactionSize)
+            throws IOException, ClassNotFoundException {
+        ProjectsManager manager = new ProjectsManager();
+        long checkpoint = 0;
+        boolean compressed = false;
+        if (snapshotFile.exists()) {
+            manager.setProjects(ProjectsFileIO.loadFromFile(snapshotFile));
+            if (ProjectsBinaryFormat.isBinaryFormat(snapshotFile)) {
+                checkpoint = ProjectsBinaryFormat.readCheckpoint(snapshotFile);
+                compressed = ProjectsBinaryFormat.isCompressed(snapshotFile);
+            }
+        }
+        File oldLogFile = oldLogFile(logFile);
+        long validOldLogSize = oldLogFile.exists() ? replay(oldLogFile, checkpoint, manager) : -1;
+        boolean oldLogNeeded = validOldLogSize >= 0;
+        if (oldLogNeeded) {
+            checkpoint++; // crashed while compacting, the log continues the old log
+            try (FileChannel old = FileChannel.open(oldLogFile.toPath(), StandardOpenOption.WRITE)) {
+                old.truncate(validOldLogSize); // records may be appended to it, see cut
+            }
+        }
+        long validLogSize = logFile.exists() ? replay(logFile, checkpoint, manager) : -1;
+        WriteAheadLog log = new WriteAheadLog(manager, snapshotFile, logFile, compactionSize, compressed,
+                oldLogNeeded, checkpoint, validLogSize);
+        if (oldLogNeeded) {
+            log.checkpoint();
+        }
+        return log;
+    }
+
+    /**
+     *
+     * @return the recovered projects, whose changes are logged
+     */
+    public ProjectsManager getProjectsManager() {
+        return manager;
+    }
+
+    /**
+     * Waits until every change reported so far is forced to disk
+     * @throws IOException if writing the log failed
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            awaitDurable();
+        }
+    }
+
+    /**
+     * Compacts the log into the snapshot file now and waits until the snapshot is written.
+     * Waits for a background compaction in progress first.
+     * @throws IOException
+     */
+    public void checkpoint() throws IOException {
+        CompletableFuture<Void> running;
+        while (true) {
+            awaitCompaction();
+            synchronized (lock) {
+                if (compaction == null || compaction.isDone()) {
+                    startCompaction();
+                    running = compaction;
+                    break;
+                }
+            }
+        }
+        try {
+            running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops logging, after writing the remaining records. Does not write a snapshot.
+     * @throws IOException if writing the log failed
+     */
+    @Override
+    public void close() throws IOException {
+        manager.setChangeListener(null);
+        awaitCompaction();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            channel.close();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public void projectAdded(Project project) {
+        log(out -> {
+            out.writeByte(ADD_PROJECT);
+            out.writeVarInt(project.getId());
+            out.writeString(project.getTitle());
+            out.writeString(project.getDescription());
+            out.writeSignedVarLong(project.getCreated().toEpochDay());
+            out.writeVarInt(project.getNextTaskId());
+        });
+    }
+
+    @Override
+    public void projectRemoved(Project project) {
+        log(out -> {
+            out.writeByte(REMOVE_PROJECT);
+            out.writeVarInt(project.getId());
+        });
+    }
+
+    @Override
+    public void taskAdded(Project project, Task task) {
+        log(out -> {
+            out.writeByte(ADD_TASK);
+            out.writeVarInt(project.getId());
+            ProjectsBinaryFormat.writeTask(out, task);
+        });
+    }
+
+    @Override
+    public void taskRemoved(Project project, Task task) {
+        log(out -> {
+            out.writeByte(REMOVE_TASK);
+            out.writeVarInt(project.getId());
+            out.writeVarInt(task.getId());
+        });
+    }
+
+    @Override
+    public void stateChanged(Project project, Task task) {
+        log(out -> {
+            out.writeByte(SET_STATE);
+            out.writeVarInt(project.getId());
+            out.writeVarInt(task.getId());
+            out.writeByte(task.getState().ordinal());
+            out.writeSignedVarLong(task.getLastUpdate().toEpochDay());
+        });
+    }
+
+    @Override
+    public void prioChanged(Project project, Task task) {
+        log(out -> {
+            out.writeByte(SET_PRIO);
+            out.writeVarInt(project.getId());
+            out.writeVarInt(task.getId());
+            out.writeByte(task.getPrio().ordinal());
+            out.writeSignedVarLong(task.getLastUpdate().toEpochDay());
+        });
+    }
+
+    @Override
+    public void takenByChanged(Project project, Task task) {
+        log(out -> {
+            out.writeByte(SET_TAKEN_BY);
+            out.writeVarInt(project.getId());
+            out.writeVarInt(task.getId());
+            out.writeString(task.getTakenBy());
+            out.writeSignedVarLong(task.getLastUpdate().toEpochDay());
+        });
+    }
+
+    /**
+     * Logs the whole batch as one record: its date once, the added tasks and the final values of the changed tasks
+     */
+    @Override
+    public void batchApplied(Project project, TaskBatch.Result result) {
+        List<Task> added = result.getAdded();
+        List<Task> changed = result.getChanged();
+        LocalDate date = (added.isEmpty() ? changed.get(0) : added.get(0)).getLastUpdate();
+        log(out -> {
+            out.writeByte(BATCH);
+            out.writeVarInt(project.getId());
+            out.writeSignedVarLong(date.toEpochDay());
+            out.writeVarInt(added.size());
+            for (Task task : added) {
+                out.writeVarInt(task.getId());
+                out.writeString(task.getDescription());
+                out.writeByte(task.getState().ordinal() << 4 | task.getPrio().ordinal());
+                out.writeString(task.getTakenBy());
+            }
+            out.writeVarInt(changed.size());
+            for (Task task : changed) {
+                out.writeVarInt(task.getId());
+                out.writeByte(task.getState().ordinal() << 4 | task.getPrio().ordinal());
+                out.writeString(task.getTakenBy());
+            }
+        });
+    }
+
+    /**
+     * Appends the record for the flusher, and compacts the log when it has grown too large
+     * @throws UncheckedIOException if writing the log or the snapshot failed
+     */
+    private void log(Record content) {
+        try {
+            synchronized (lock) {
+                if (closed) {
+                    throw new IllegalStateException("The write-ahead log is closed");
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                content.writeTo(recordOut);
+                recordOut.flush();
+                crc.reset();
+                crc.update(record.toByteArray());
+                pendingOut.writeInt(record.size());
+                record.writeTo(pendingOut);
+                pendingOut.writeInt((int) crc.getValue());
+                record.reset();
+                appended++;
+                lock.notifyAll();
+                if (logSize + pending.size() >= compactionSize && (compaction == null || compaction.isDone())) {
+                    startCompaction();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts a new log and writes a snapshot, captured on another thread, in the background.
+     * Called holding the lock.
+     */
+    private void startCompaction() throws IOException {
+        CompletableFuture<Void> started = new CompletableFuture<>();
+        compaction = started; // cut waits on the lock, meanwhile other threads must not start a compaction
+        try {
+            cut();
+        } catch (IOException | RuntimeException e) {
+            started.completeExceptionally(e);
+            throw e;
+        }
+        ProjectsFileIO.saveInBackground(snapshotFile, manager::captureSnapshot, checkpoint, compressed)
+                .whenComplete((saved, error) -> {
+                    compacted(error);
+                    if (error == null) {
+                        started.complete(null);
+                    } else {
+                        started.completeExceptionally(error);
+                    }
+                });
+    }
+
+    /**
+     * Moves the records logged so far to the old log and starts a new log continuing it.
+     * If the old log is still needed because its snapshot was not written, the records are
+     * appended to it and the new log keeps the checkpoint number. Called holding the lock.
+     */
+    private void cut() throws IOException {
+        awaitDurable(); // the flusher stays idle while the lock is held
+        channel.close();
+        if (oldLogNeeded) {
+            appendRecords(logFile, oldLogFile);
+        } else {
+            Files.move(logFile.toPath(), oldLogFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            oldLogNeeded = true;
+            checkpoint++;
+        }
+        startLog();
+    }
+
+    /**
+     * Appends the records of a log, without its header, to the end of another log
+     */
+    private static void appendRecords(File from, File to) throws IOException {
+        try (FileChannel source = FileChannel.open(from.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(to.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.APPEND)) {
+            ChannelReader in = new ChannelReader(source);
+            readLogHeader(in);
+            long position = in.position();
+            long end = source.size();
+            while (position < end) {
+                long copied = source.transferTo(position, end - position, target);
+                if (copied <= 0) {
+                    throw new IOException("Could not copy the write-ahead log");
+                }
+                position += copied;
+            }
+            target.force(false);
+        }
+    }
+
+    private void compacted(Throwable error) {
+        synchronized (lock) {
+            if (error != null) {
+                return; // the old log stays needed until the next checkpoint
+            }
+            oldLogNeeded = false;
+            try {
+                Files.deleteIfExists(oldLogFile.toPath());
+            } catch (IOException e) {
+                // a leftover old log is older than the snapshot and skipped by recovery
+            }
+        }
+    }
+
+    private void awaitCompaction() {
+        CompletableFuture<Void> running;
+        synchronized (lock) {
+            running = compaction;
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                // the old log is kept, checkpoint writes a new snapshot
+            }
+        }
+    }
+
+    /**
+     * Writes the collected records and forces them to disk, until closed
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                batchEnd = appended;
+                pending.reset();
+            }
+            try {
+                ByteBuffer bytes = ByteBuffer.wrap(batch);
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                durable = batchEnd;
+                logSize += batch.length;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits, holding the lock, until the flusher has forced every record to disk
+     */
+    private void awaitDurable() throws IOException {
+        while (durable < appended && failure == null) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing the write-ahead log", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Replaces the log file with an empty log continuing the current checkpoint
+     */
+    private void startLog() throws IOException {
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        ChannelWriter out = new ChannelWriter(channel);
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeVarInt(VERSION);
+        out.writeSignedVarLong(checkpoint);
+        ProjectsBinaryFormat.writeEnumNames(out);
+        out.sync();
+        logSize = out.position();
+    }
+
+    private static File oldLogFile(File logFile) {
+        return new File(logFile.getPath() + ".old");
+    }
+
+    /**
+     * Applies the records of the log to the projects
+     * @return the size of the log up to its last complete record,
+     * or -1 if the log does not continue the checkpoint
+     */
+    private static long replay(File logFile, long checkpoint, ProjectsManager manager) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ChannelReader in = new ChannelReader(channel);
+            ProjectsBinaryFormat.Schema schema;
+            try {
+                schema = readLogHeader(in);
+            } catch (EOFException e) {
+                return -1; // torn while the log was started
+            }
+            if (schema.checkpoint != checkpoint) {
+                return -1; // already part of the snapshot
+            }
+            CRC32 crc = new CRC32();
+            long valid = in.position();
+            while (true) {
+                byte[] content;
+                try {
+                    int length = in.readFixedInt();
+                    if (length < 0 || length > size - in.position()) {
+                        return valid;
+                    }
+                    content = new byte[length];
+                    in.readBytes(content, 0, length);
+                    crc.reset();
+                    crc.update(content);
+                    if (in.readFixedInt() != (int) crc.getValue()) {
+                        return valid;
+                    }
+                } catch (EOFException e) {
+                    return valid;
+                }
+                apply(new ChannelReader(ByteBuffer.wrap(content)), schema, manager);
+                valid = in.position();
+            }
+        } catch (IllegalArgumentException | TitleNotUniqueException e) {
+            throw ProjectsBinaryFormat.corrupted(e);
+        }
+    }
+
+    /**
+     * Applies a batch record, skipping the added tasks that exist and the changed tasks that do not
+     */
+    private static void applyBatch(ChannelReader in, ProjectsBinaryFormat.Schema schema, Project project)
+            throws IOException {
+        LocalDate date = in.readDate();
+        int addedCount = in.readVarInt();
+        for (int i = 0; i < addedCount; i++) {
+            int id = in.readVarInt();
+            String description = in.readString();
+            int stateAndPrio = in.readByte();
+            String takenBy = in.readString();
+            if (project.getTaskById(id) == null) {
+                project.restoreTask(id, description, schema.prio(stateAndPrio & 0x0F),
+                        schema.state(stateAndPrio >>> 4), takenBy, date);
+            }
+        }
+        int changedCount = in.readVarInt();
+        for (int i = 0; i < changedCount; i++) {
+            int id = in.readVarInt();
+            int stateAndPrio = in.readByte();
+            String takenBy = in.readString();
+            if (project.getTaskById(id) != null) {
+                project.restoreTaskValues(id, schema.state(stateAndPrio >>> 4), schema.prio(stateAndPrio & 0x0F),
+                        takenBy, date);
+            }
+        }
+    }
+
+    /**
+     * Reads the header of a log
+     * @return the enum names of the log, with the checkpoint number it continues
+     */
+    private static ProjectsBinaryFormat.Schema readLogHeader(ChannelReader in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readBytes(magic, 0, magic.length);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new StreamCorruptedException("Not a project log file");
+        }
+        int version = in.readVarInt();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported project log version " + version);
+        }
+        long base = in.readSignedVarLong();
+        return ProjectsBinaryFormat.readEnumNames(in, version, base);
+    }
+
+    /**
+     * Applies one record, skipping it if the projects already contain it
+     */
+    private static void apply(ChannelReader in, ProjectsBinaryFormat.Schema schema, ProjectsManager manager)
+            throws IOException {
+        int type = in.readByte();
+        if (type == ADD_PROJECT) {
+            int id = in.readVarInt();
+            String title = in.readString();
+            String description = in.readString();
+            LocalDate created = in.readDate();
+            int nextTaskId = in.readVarInt();
+            if (manager.getProjectById(id) == null && manager.isTitleUnique(title)) {
+                manager.restoreProject(id, title, description, created, nextTaskId);
+            }
+            return;
+        }
+        Project project = manager.getProjectById(in.readVarInt());
+        if (project == null) {
+            return; // removed later
+        }
+        if (type == REMOVE_PROJECT) {
+            manager.removeProject(project);
+            return;
+        }
+        if (type == ADD_TASK) {
+            ProjectsBinaryFormat.readTask(in, schema, project, true);
+            return;
+        }
+        if (type == BATCH) {
+            applyBatch(in, schema, project);
+            return;
+        }
+        Task task = project.getTaskById(in.readVarInt());
+        if (task == null) {
+            if (type < REMOVE_TASK || type > SET_TAKEN_BY) {
+                throw new StreamCorruptedException("Unknown log record type " + type);
+            }
+            return; // removed later
+        }
+        switch (type) {
+            case REMOVE_TASK:
+                project.removeTask(task);
+                break;
+            case SET_STATE:
+                project.restoreTaskValues(task.getId(), schema.state(in.readByte()), task.getPrio(),
+                        task.getTakenBy(), in.readDate());
+                break;
+            case SET_PRIO:
+                project.restoreTaskValues(task.getId(), task.getState(), schema.prio(in.readByte()),
+                        task.getTakenBy(), in.readDate());
+                break;
+            case SET_TAKEN_BY:
+                project.restoreTaskValues(task.getId(), task.getState(), task.getPrio(),
+                        in.readString(), in.readDate());
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown log record type " + type);
+        }
+    }
+}
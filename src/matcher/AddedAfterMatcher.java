@@ -0,0 +1,28 @@
+package matcher;
+
+import model.Task;
+import model.TaskColumns;
+
+/**
+ * Matches tasks added to the project after the task with a given ID,
+ * since a project gives out its task IDs in increasing order.
+ * There is no index on the ID, the project's ID column is scanned instead.
+ */
+
+public class AddedAfterMatcher implements ITaskMatcher{
+    private final int taskId;
+
+    public AddedAfterMatcher(int taskId){
+        this.taskId = taskId;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return task.getId() > taskId;
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        return columns.addedAfter(taskId);
+    }
+}
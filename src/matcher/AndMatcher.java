@@ -0,0 +1,120 @@
+package matcher;
+
+import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Matches tasks accepted by all of the given matchers.
+ * Evaluation stops at the first matcher that rejects the task.
+ */
+
+public class AndMatcher implements ITaskMatcher{
+    private final List<ITaskMatcher> matchers;
+
+    public AndMatcher(ITaskMatcher... matchers){
+        this(Arrays.asList(matchers));
+    }
+
+    public AndMatcher(List<ITaskMatcher> matchers){
+        this.matchers = List.copyOf(matchers);
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for(ITaskMatcher matcher : matchers){
+            if(!matcher.match(task)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Uses the index of the part with the fewest estimated matches,
+     * the other parts are then checked on those candidates only
+     */
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        ITaskMatcher best = null;
+        int bestEstimate = Integer.MAX_VALUE;
+        for(ITaskMatcher matcher : matchers){
+            if(matcher.isIndexed()){
+                int estimate = matcher.estimate(index);
+                if(best == null || (estimate >= 0 && estimate < bestEstimate)){
+                    best = matcher;
+                    bestEstimate = estimate < 0 ? Integer.MAX_VALUE : estimate;
+                }
+            }
+        }
+        return best == null ? null : best.candidates(index);
+    }
+
+    @Override
+    public boolean isIndexed() {
+        for(ITaskMatcher matcher : matchers){
+            if(matcher.isIndexed()){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        int estimate = -1;
+        for(ITaskMatcher matcher : matchers){
+            int partEstimate = matcher.estimate(index);
+            if(partEstimate >= 0 && (estimate < 0 || partEstimate < estimate)){
+                estimate = partEstimate;
+            }
+        }
+        return estimate;
+    }
+
+    @Override
+    public int cost() {
+        int cost = 0;
+        for(ITaskMatcher matcher : matchers){
+            cost += matcher.cost();
+        }
+        return cost;
+    }
+
+    @Override
+    public ITaskMatcher plan(TaskIndex index) {
+        List<ITaskMatcher> planned = new ArrayList<>(matchers.size());
+        for(ITaskMatcher matcher : matchers){
+            planned.add(matcher.plan(index));
+        }
+        planned.sort(Selectivity.forAnd(index));
+        return new AndMatcher(planned);
+    }
+
+    /**
+     * The intersection of the parts' rows, only possible when every part can be selected.
+     * The rows of a negated part are removed rather than negated first
+     */
+    @Override
+    public long[] select(TaskColumns columns) {
+        long[] rows = columns.all();
+        for(ITaskMatcher matcher : matchers){
+            boolean negated = matcher instanceof NotMatcher;
+            long[] part = negated ? ((NotMatcher) matcher).negated().select(columns) : matcher.select(columns);
+            if(part == null){
+                return null;
+            }
+            if(negated){
+                TaskColumns.andNot(rows, part);
+            } else {
+                TaskColumns.and(rows, part);
+            }
+        }
+        return rows;
+    }
+}
@@ -1,7 +1,67 @@
 package matcher;
 
 import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
+
+import java.util.Collection;
 
 public interface ITaskMatcher {
     boolean match(Task task);
+
+    /**
+     * Looks up the tasks that may match using the project's indexes.
+     * Matchers that cannot use an index return null and the project scans all tasks.
+     * @param index
+     * @return the candidate tasks, or null if no index applies
+     */
+    default Collection<Task> candidates(TaskIndex index){
+        return null;
+    }
+
+    /**
+     *
+     * @return true if candidates returns an index lookup rather than null
+     */
+    default boolean isIndexed(){
+        return false;
+    }
+
+    /**
+     * Estimates how many tasks match, used to order combined matchers
+     * @param index
+     * @return the estimated number of matching tasks, or -1 if unknown
+     */
+    default int estimate(TaskIndex index){
+        return -1;
+    }
+
+    /**
+     *
+     * @return the relative cost of one call to match, simple field checks cost 1
+     */
+    default int cost(){
+        return 1;
+    }
+
+    /**
+     * Returns an equivalent matcher arranged for cheap evaluation against the index,
+     * for example with the most selective and cheapest parts of a combination first.
+     * Called by Project.findTasks before evaluating the matcher.
+     * @param index
+     * @return the planned matcher, this by default
+     */
+    default ITaskMatcher plan(TaskIndex index){
+        return this;
+    }
+
+    /**
+     * Selects the matching tasks by scanning the project's columns instead of calling match
+     * for every task. Matchers on values without a column return null and are evaluated with match.
+     * @param columns
+     * @return the matching rows as a bitset, see TaskColumns, or null if the columns cannot tell
+     */
+    default long[] select(TaskColumns columns){
+        return null;
+    }
 }
@@ -1,12 +1,37 @@
 package matcher;
 
 import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
 import model.TaskState;
 
+import java.util.Collection;
+import java.util.EnumSet;
+
 public class NotDoneMatcher implements ITaskMatcher{
 
     @Override
     public boolean match(Task task){
         return task.getState() != TaskState.DONE;
     }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return index.withStates(EnumSet.complementOf(EnumSet.of(TaskState.DONE)));
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return index.size() - index.countWithState(TaskState.DONE);
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        return columns.not(columns.withState(TaskState.DONE));
+    }
 }
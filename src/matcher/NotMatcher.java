@@ -0,0 +1,52 @@
+package matcher;
+
+import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
+
+/**
+ * Matches tasks rejected by the given matcher.
+ */
+
+public class NotMatcher implements ITaskMatcher{
+    private final ITaskMatcher matcher;
+
+    public NotMatcher(ITaskMatcher matcher){
+        this.matcher = matcher;
+    }
+
+    /**
+     *
+     * @return the matcher whose matches this one rejects
+     */
+    ITaskMatcher negated(){
+        return matcher;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return !matcher.match(task);
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        int estimate = matcher.estimate(index);
+        return estimate < 0 ? -1 : Math.max(0, index.size() - estimate);
+    }
+
+    @Override
+    public int cost() {
+        return matcher.cost();
+    }
+
+    @Override
+    public ITaskMatcher plan(TaskIndex index) {
+        return new NotMatcher(matcher.plan(index));
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        long[] rows = matcher.select(columns);
+        return rows == null ? null : columns.not(rows);
+    }
+}
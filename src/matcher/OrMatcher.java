@@ -0,0 +1,107 @@
+package matcher;
+
+import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
+
+import java.util.*;
+
+/**
+ * Matches tasks accepted by at least one of the given matchers.
+ * Evaluation stops at the first matcher that accepts the task.
+ */
+
+public class OrMatcher implements ITaskMatcher{
+    private final List<ITaskMatcher> matchers;
+
+    public OrMatcher(ITaskMatcher... matchers){
+        this(Arrays.asList(matchers));
+    }
+
+    public OrMatcher(List<ITaskMatcher> matchers){
+        this.matchers = List.copyOf(matchers);
+    }
+
+    @Override
+    public boolean match(Task task) {
+        for(ITaskMatcher matcher : matchers){
+            if(matcher.match(task)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The union of the parts' candidates, only possible when every part has an index
+     */
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        if(!isIndexed()){
+            return null;
+        }
+        Set<Task> union = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(ITaskMatcher matcher : matchers){
+            union.addAll(matcher.candidates(index));
+        }
+        return union;
+    }
+
+    @Override
+    public boolean isIndexed() {
+        for(ITaskMatcher matcher : matchers){
+            if(!matcher.isIndexed()){
+                return false;
+            }
+        }
+        return !matchers.isEmpty();
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        long estimate = 0;
+        for(ITaskMatcher matcher : matchers){
+            int partEstimate = matcher.estimate(index);
+            if(partEstimate < 0){
+                return -1;
+            }
+            estimate += partEstimate;
+        }
+        return (int) Math.min(estimate, index.size());
+    }
+
+    @Override
+    public int cost() {
+        int cost = 0;
+        for(ITaskMatcher matcher : matchers){
+            cost += matcher.cost();
+        }
+        return cost;
+    }
+
+    @Override
+    public ITaskMatcher plan(TaskIndex index) {
+        List<ITaskMatcher> planned = new ArrayList<>(matchers.size());
+        for(ITaskMatcher matcher : matchers){
+            planned.add(matcher.plan(index));
+        }
+        planned.sort(Selectivity.forOr(index));
+        return new OrMatcher(planned);
+    }
+
+    /**
+     * The union of the parts' rows, only possible when every part can be selected
+     */
+    @Override
+    public long[] select(TaskColumns columns) {
+        long[] rows = columns.none();
+        for(ITaskMatcher matcher : matchers){
+            long[] part = matcher.select(columns);
+            if(part == null){
+                return null;
+            }
+            TaskColumns.or(rows, part);
+        }
+        return rows;
+    }
+}
@@ -1,8 +1,12 @@
 package matcher;
 
 import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
 import model.TaskPrio;
 
+import java.util.Collection;
+
 public class PrioMatcher implements ITaskMatcher{
     private final TaskPrio requiredPrio;
 
@@ -14,4 +18,24 @@ public class PrioMatcher implements ITaskMatcher{
     public boolean match(Task task) {
         return task.getPrio() == requiredPrio;
     }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return index.withPrio(requiredPrio);
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return index.countWithPrio(requiredPrio);
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        return columns.withPrio(requiredPrio);
+    }
 }
@@ -0,0 +1,52 @@
+package matcher;
+
+import model.TaskIndex;
+
+import java.util.Comparator;
+
+/**
+ * Helpers for ordering the parts of combined matchers.
+ * A part's selectivity is the estimated fraction of tasks it matches.
+ */
+
+class Selectivity {
+    private static final double UNKNOWN = 0.5;
+
+    /**
+     *
+     * @param matcher
+     * @param index
+     * @return the estimated fraction of the indexed tasks the matcher accepts
+     */
+    static double of(ITaskMatcher matcher, TaskIndex index){
+        int total = index.size();
+        int estimate = matcher.estimate(index);
+        if(estimate < 0){
+            return UNKNOWN;
+        }
+        if(total == 0){
+            return 0;
+        }
+        return Math.min(1.0, (double) estimate / total);
+    }
+
+    /**
+     * For AND, evaluate first the parts that reject the most tasks per unit of cost
+     * @param index
+     * @return a comparator putting the best part to evaluate first
+     */
+    static Comparator<ITaskMatcher> forAnd(TaskIndex index){
+        return Comparator.comparingDouble(matcher -> matcher.cost() / Math.max(1e-9, 1 - of(matcher, index)));
+    }
+
+    /**
+     * For OR, evaluate first the parts that accept the most tasks per unit of cost
+     * @param index
+     * @return a comparator putting the best part to evaluate first
+     */
+    static Comparator<ITaskMatcher> forOr(TaskIndex index){
+        return Comparator.comparingDouble(matcher -> matcher.cost() / Math.max(1e-9, of(matcher, index)));
+    }
+
+    private Selectivity() {}
+}
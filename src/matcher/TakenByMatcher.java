@@ -1,6 +1,10 @@
 package matcher;
 
 import model.Task;
+import model.TaskColumns;
+import model.TaskIndex;
+
+import java.util.Collection;
 
 public class TakenByMatcher implements ITaskMatcher{
     private final String requiredTakenBy;
@@ -17,4 +21,24 @@ public class TakenByMatcher implements ITaskMatcher{
         }
         return requiredTakenBy.equals(takenBy);
     }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return index.takenBy(requiredTakenBy);
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        return index.countTakenBy(requiredTakenBy);
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        return requiredTakenBy.isEmpty() ? columns.none() : columns.takenBy(requiredTakenBy);
+    }
 }
@@ -0,0 +1,80 @@
+package matcher;
+
+import model.Task;
+import model.TaskIndex;
+import search.Tokenizer;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Matches tasks whose description contains all (AND) or any (OR) of the given words.
+ * Words are compared case-insensitively, see search.Tokenizer.
+ */
+
+public class TextMatcher implements ITaskMatcher{
+    private final List<String> words;
+    private final boolean matchAll;
+
+    /**
+     * Matches tasks containing all the words
+     * @param text
+     */
+    public TextMatcher(String text){
+        this(text, true);
+    }
+
+    /**
+     *
+     * @param text
+     * @param matchAll true to require all words (AND), false to require any word (OR)
+     */
+    public TextMatcher(String text, boolean matchAll){
+        this.words = Tokenizer.words(text);
+        this.matchAll = matchAll;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        if(words.isEmpty()){
+            return false;
+        }
+        Set<String> taskWords = new HashSet<>(Tokenizer.words(task.getDescription()));
+        if(matchAll){
+            return taskWords.containsAll(words);
+        }
+        for(String word : words){
+            if(taskWords.contains(word)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Collection<Task> candidates(TaskIndex index) {
+        return matchAll ? index.withAllWords(words) : index.withAnyWord(words);
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return true;
+    }
+
+    @Override
+    public int estimate(TaskIndex index) {
+        int estimate = matchAll ? Integer.MAX_VALUE : 0;
+        for(String word : words){
+            int count = index.countWithWord(word);
+            estimate = matchAll ? Math.min(estimate, count) : estimate + count;
+        }
+        return words.isEmpty() ? 0 : estimate;
+    }
+
+    @Override
+    public int cost() {
+        return 10; // tokenizes the description
+    }
+}
@@ -0,0 +1,34 @@
+package matcher;
+
+import model.Task;
+import model.TaskColumns;
+
+import java.time.LocalDate;
+
+/**
+ * Matches tasks last updated on or after a date.
+ * There is no index on the date, the project's date column is scanned instead.
+ */
+
+public class UpdatedSinceMatcher implements ITaskMatcher{
+    private final LocalDate since;
+
+    public UpdatedSinceMatcher(LocalDate since){
+        this.since = since;
+    }
+
+    @Override
+    public boolean match(Task task) {
+        return !task.getLastUpdate().isBefore(since);
+    }
+
+    @Override
+    public int cost() {
+        return 2; // builds a LocalDate
+    }
+
+    @Override
+    public long[] select(TaskColumns columns) {
+        return columns.updatedSince(since);
+    }
+}
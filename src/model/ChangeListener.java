@@ -0,0 +1,64 @@
+package model;
+
+/**
+ * Receives the changes made to the projects of a ProjectsManager, after each change is done,
+ * see ProjectsManager.setChangeListener. Projects and tasks added through the restore
+ * methods, used when loading stored data, are not reported.
+ */
+
+public interface ChangeListener {
+    /**
+     * A project was added by ProjectsManager.addProject
+     * @param project
+     */
+    void projectAdded(Project project);
+
+    /**
+     * A project was removed by ProjectsManager.removeProject
+     * @param project
+     */
+    void projectRemoved(Project project);
+
+    /**
+     * A task was added by Project.addTask
+     * @param project
+     * @param task
+     */
+    void taskAdded(Project project, Task task);
+
+    /**
+     * A task was removed by Project.removeTask
+     * @param project
+     * @param task
+     */
+    void taskRemoved(Project project, Task task);
+
+    /**
+     * The state and the last update of the task changed
+     * @param project
+     * @param task
+     */
+    void stateChanged(Project project, Task task);
+
+    /**
+     * The priority and the last update of the task changed
+     * @param project
+     * @param task
+     */
+    void prioChanged(Project project, Task task);
+
+    /**
+     * The task was taken and its last update changed
+     * @param project
+     * @param task
+     */
+    void takenByChanged(Project project, Task task);
+
+    /**
+     * A batch added and changed tasks of the project, all with the same last update,
+     * see TaskBatch. The tasks are reported with their values after the whole batch
+     * @param project
+     * @param result
+     */
+    void batchApplied(Project project, TaskBatch.Result result);
+}
@@ -0,0 +1,153 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A small open addressing hash map from int keys to int values.
+ * Used as a primary-key index (id -> position) without boxing the keys.
+ * Values are expected to be non-negative, a missing key is reported as -1.
+ */
+
+class IntIntMap {
+    private static final int FREE = 0;
+    private static final int USED = 1;
+    private static final int REMOVED = 2;
+    private static final int MISSING = -1;
+
+    private int[] keys;
+    private int[] values;
+    private byte[] slotState;
+    private int size;
+    private int occupied; // used + removed slots, decides when to rehash
+
+    /**
+     * Creates an empty map with room for a few entries.
+     */
+    IntIntMap(){
+        this(16);
+    }
+
+    /**
+     * Creates an empty map with room for the expected number of entries.
+     * @param expectedSize
+     */
+    IntIntMap(int expectedSize){
+        int capacity = 16;
+        while(capacity * 3 / 4 < expectedSize){
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     *
+     * @param key
+     * @return the value stored for the key or -1 if the key is not present
+     */
+    int get(int key){
+        int slot = findSlot(key);
+        return slot < 0 ? MISSING : values[slot];
+    }
+
+    /**
+     * Stores the value for the key, replacing any earlier value
+     * @param key
+     * @param value
+     */
+    void put(int key, int value){
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        int firstRemoved = -1;
+        while(slotState[slot] != FREE){
+            if(slotState[slot] == USED && keys[slot] == key){
+                values[slot] = value;
+                return;
+            }
+            if(slotState[slot] == REMOVED && firstRemoved < 0){
+                firstRemoved = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if(firstRemoved >= 0){
+            slot = firstRemoved;
+        } else {
+            occupied++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        slotState[slot] = USED;
+        size++;
+        if(occupied * 4 >= keys.length * 3){
+            rehash(size >= keys.length / 2 ? keys.length << 1 : keys.length);
+        }
+    }
+
+    /**
+     * Removes the key from the map
+     * @param key
+     * @return the removed value or -1 if the key was not present
+     */
+    int remove(int key){
+        int slot = findSlot(key);
+        if(slot < 0){
+            return MISSING;
+        }
+        slotState[slot] = REMOVED;
+        size--;
+        return values[slot];
+    }
+
+    /**
+     * Removes all entries but keeps the allocated capacity
+     */
+    void clear(){
+        Arrays.fill(slotState, (byte) FREE);
+        size = 0;
+        occupied = 0;
+    }
+
+    /**
+     *
+     * @return the number of keys in the map
+     */
+    int size(){
+        return size;
+    }
+
+    private int findSlot(int key){
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while(slotState[slot] != FREE){
+            if(slotState[slot] == USED && keys[slot] == key){
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void rehash(int newCapacity){
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        byte[] oldState = slotState;
+        allocate(newCapacity);
+        size = 0;
+        occupied = 0;
+        for(int i = 0; i < oldKeys.length; i++){
+            if(oldState[i] == USED){
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity){
+        keys = new int[capacity];
+        values = new int[capacity];
+        slotState = new byte[capacity];
+    }
+
+    private static int mix(int key){
+        int h = key * 0x9E3779B9; // ids are sequential, spread them over the table
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,199 @@
+package model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * The tasks of a project stored outside the Java heap, see Project.offloadTasks.
+ * Every task is a fixed-width record in one direct buffer, the descriptions are UTF-8
+ * bytes in a second direct buffer, the string arena, that the records point into.
+ * The garbage collector sees two buffer objects however many tasks are stored,
+ * the memory is freed when the buffers become unreachable.
+ * The records are kept in natural order, so they can be read as a sorted stream, and a third
+ * buffer holds pairs of task id and record number sorted by id, to find single tasks by id.
+ * Reads decode only the records they visit, into read-only copies of the tasks.
+ * The stored tasks never change, so they can be loaded any number of times, also by snapshots.
+ */
+
+final class OffHeapTasks implements TaskLoader {
+    // record layout
+    private static final int ID = 0;
+    private static final int LAST_UPDATE = 4; // epoch day
+    private static final int TAKEN_BY = 8; // number in TakenByNames
+    private static final int DESCRIPTION_OFFSET = 12; // position in the arena
+    private static final int DESCRIPTION_LENGTH = 16;
+    private static final int STATE_AND_PRIO = 20; // state ordinal in the high bits, prio ordinal in the low bits
+    private static final int RECORD_SIZE = 24;
+    private static final int ID_ENTRY_SIZE = 8; // task id and record number
+
+    private static final TaskState[] STATES = TaskState.values();
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+
+    private final ByteBuffer records;
+    private final ByteBuffer arena;
+    private final ByteBuffer ids;
+    private final int count;
+
+    private OffHeapTasks(ByteBuffer records, ByteBuffer arena, ByteBuffer ids, int count){
+        this.records = records;
+        this.arena = arena;
+        this.ids = ids;
+        this.count = count;
+    }
+
+    /**
+     * Copies the values of the tasks into new off-heap buffers
+     * @param tasks the tasks in natural order
+     * @return the stored tasks
+     * @throws IllegalStateException if the records or the descriptions do not fit in a buffer
+     */
+    static OffHeapTasks store(Collection<Task> tasks) throws IllegalStateException {
+        int count = tasks.size();
+        long recordsSize = (long) count * RECORD_SIZE;
+        if(recordsSize > Integer.MAX_VALUE){
+            throw new IllegalStateException("Too many tasks to store off heap: " + count);
+        }
+        ByteBuffer records = ByteBuffer.allocateDirect((int) recordsSize).order(ByteOrder.nativeOrder());
+        // a first guess of 32 bytes per description, grown when it is too small
+        long arenaSize = Math.min(Integer.MAX_VALUE, Math.max(64L, (long) count * 32));
+        ByteBuffer arena = ByteBuffer.allocateDirect((int) arenaSize);
+        long[] idsAndRecords = new long[count];
+        int i = 0;
+        for(Task task : tasks){
+            idsAndRecords[i] = (long) task.getId() << 32 | i;
+            byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+            if(arena.remaining() < description.length){
+                arena = grow(arena, description.length);
+            }
+            int record = i * RECORD_SIZE;
+            records.putInt(record + ID, task.getId());
+            records.putInt(record + LAST_UPDATE, Math.toIntExact(task.getLastUpdate().toEpochDay()));
+            records.putInt(record + TAKEN_BY, TakenByNames.numberOf(task.getTakenBy()));
+            records.putInt(record + DESCRIPTION_OFFSET, arena.position());
+            records.putInt(record + DESCRIPTION_LENGTH, description.length);
+            records.put(record + STATE_AND_PRIO,
+                    (byte) (task.getState().ordinal() << 4 | task.getPrio().ordinal()));
+            arena.put(description);
+            i++;
+        }
+        Arrays.sort(idsAndRecords); // ids are not negative
+        ByteBuffer ids = ByteBuffer.allocateDirect(count * ID_ENTRY_SIZE).order(ByteOrder.nativeOrder());
+        for(long idAndRecord : idsAndRecords){
+            ids.putLong(idAndRecord);
+        }
+        return new OffHeapTasks(records, trim(arena), ids, count);
+    }
+
+    /**
+     * Moves the arena to a buffer with room for at least needed more bytes
+     */
+    private static ByteBuffer grow(ByteBuffer arena, int needed){
+        long capacity = Math.max((long) arena.capacity() * 2, (long) arena.position() + needed);
+        if(capacity > Integer.MAX_VALUE){
+            if((long) arena.position() + needed > Integer.MAX_VALUE){
+                throw new IllegalStateException("The task descriptions are too large to store off heap");
+            }
+            capacity = Integer.MAX_VALUE;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) capacity);
+        arena.flip();
+        grown.put(arena);
+        return grown;
+    }
+
+    /**
+     * Copies the arena to a buffer of its used size if much of it is unused
+     */
+    private static ByteBuffer trim(ByteBuffer arena){
+        if(arena.remaining() <= arena.position() / 4){
+            return arena;
+        }
+        ByteBuffer trimmed = ByteBuffer.allocateDirect(arena.position());
+        arena.flip();
+        trimmed.put(arena);
+        return trimmed;
+    }
+
+    /**
+     *
+     * @return the number of stored tasks
+     */
+    int size(){
+        return count;
+    }
+
+    /**
+     * Finds a stored task by id with a binary search over the sorted ids
+     * @param id
+     * @return the record number of the task, or -1 if no task has the id
+     */
+    int recordOf(int id){
+        int low = 0;
+        int high = count - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            long idAndRecord = ids.getLong(middle * ID_ENTRY_SIZE);
+            int found = (int) (idAndRecord >>> 32);
+            if(found < id){
+                low = middle + 1;
+            } else if(found > id){
+                high = middle - 1;
+            } else {
+                return (int) idAndRecord;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the stored tasks lazily, one record at a time
+     * @return read-only copies of the stored tasks in natural order
+     */
+    Stream<Task> stream(){
+        return IntStream.range(0, count).mapToObj(this::read);
+    }
+
+    /**
+     *
+     * @param record a record number
+     * @return a read-only copy of the stored task, its setters throw IllegalStateException
+     */
+    Task read(int record){
+        Task task = decode(record);
+        task.offload();
+        return task;
+    }
+
+    private Task decode(int record){
+        int base = record * RECORD_SIZE;
+        byte[] description = new byte[records.getInt(base + DESCRIPTION_LENGTH)];
+        arena.get(records.getInt(base + DESCRIPTION_OFFSET), description);
+        int stateAndPrio = records.get(base + STATE_AND_PRIO);
+        return new Task(new String(description, StandardCharsets.UTF_8),
+                PRIOS[stateAndPrio & 0xF],
+                records.getInt(base + ID),
+                STATES[stateAndPrio >> 4],
+                TakenByNames.name(records.getInt(base + TAKEN_BY)),
+                LocalDate.ofEpochDay(records.getInt(base + LAST_UPDATE)));
+    }
+
+    /**
+     * Restores the stored tasks with their IDs and values, in the order of their IDs
+     * like they were added, which keeps appending to the word index postings cheap
+     * @param project
+     */
+    @Override
+    public void loadTasks(Project project) {
+        for(int i = 0; i < count; i++){
+            Task task = decode((int) ids.getLong(i * ID_ENTRY_SIZE));
+            project.restoreTask(task.getId(), task.getDescription(), task.getPrio(), task.getState(),
+                    task.getTakenBy(), task.getLastUpdate());
+        }
+    }
+}
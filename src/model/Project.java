@@ -2,22 +2,50 @@ package model;
 
 import matcher.ITaskMatcher;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a project, containing a list of tasks
  * Projects are naturally ordered by their title
+ * A project is safe for concurrent use: a read-write lock per project guards its tasks and indexes,
+ * so readers run in parallel, and writers to different projects never wait for each other.
+ * Changes are reported to the listener while the lock is held, in the order they were made.
  */
 
 public class Project implements Comparable<Project>, Serializable {
+    private static final long serialVersionUID = 4216753095793161992L;
+    private static final AtomicReferenceFieldUpdater<Project, ProjectSnapshot> SNAPSHOT =
+            AtomicReferenceFieldUpdater.newUpdater(Project.class, ProjectSnapshot.class, "snapshot");
+    private static final int FEW_ROWS = 16; // up to 1/16 of the tasks sort faster than a walk over all of them
+
     private final List<Task> tasks;
     private final String title;
     private final int id;
     private final String description;
     private final LocalDate created;
     private int nextTaskId;
+    private transient IntIntMap taskSlots; // task id -> position in tasks
+    private transient TaskIndexes indexes;
+    private transient TaskColumns columns; // the values of tasks.get(i) in row i, for scans
+    private transient int doneCount;
+    private transient NavigableMap<LocalDate, Integer> updateDateCounts; // lastUpdate -> number of tasks
+    private transient LocalDate latestUpdate; // greatest key of updateDateCounts, null when empty
+    private transient volatile TaskLoader taskLoader; // set while the stored tasks are not loaded yet
+    private transient int deferredTaskCount;
+    private transient int deferredDoneCount;
+    private transient LocalDate deferredLastUpdated;
+    private transient volatile ChangeListener listener; // set by the ProjectsManager holding the project
+    private transient volatile ProjectSnapshot snapshot; // captured view whose tasks are not copied yet
+    private transient ReentrantReadWriteLock lock; // guards the tasks, their indexes and the counts
 
     /**
      * This constructor is package-private to ensure Projects are only created
@@ -35,39 +63,315 @@ public class Project implements Comparable<Project>, Serializable {
         this.tasks = new ArrayList<>();
         this.created = LocalDate.now();
         this.nextTaskId = 1;
+        this.taskSlots = new IntIntMap();
+        this.columns = new TaskColumns();
+        this.indexes = new TaskIndexes(this::taskById, columns);
+        this.updateDateCounts = new TreeMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Recreates a stored project, see ProjectsManager.restoreProject
+     * @param title
+     * @param description
+     * @param id
+     * @param created
+     * @param nextTaskId
+     */
+
+    Project(String title, String description, int id, LocalDate created, int nextTaskId) {
+        this.title = title;
+        this.description = description;
+        this.id = id;
+
+        this.tasks = new ArrayList<>();
+        this.created = created;
+        this.nextTaskId = nextTaskId;
+        this.taskSlots = new IntIntMap();
+        this.columns = new TaskColumns();
+        this.indexes = new TaskIndexes(this::taskById, columns);
+        this.updateDateCounts = new TreeMap<>();
+        this.lock = new ReentrantReadWriteLock();
     }
 
     /**
      * Retrives a Task by its unique ID within this project.
+     * If the tasks are off heap, an ID without a task is answered from the stored ids,
+     * otherwise the tasks are restored first, since the task is returned to be changed.
      * @param id
      * @return the desired task or null if the task does not exist
      */
     public Task getTaskById(int id){
-        for(Task task : tasks){
-            if(task.getId() == id){
-                return task;
-            }
+        OffHeapTasks stored = offHeapTasks();
+        if(stored != null && stored.recordOf(id) < 0){
+            return null;
+        }
+        loadDeferredTasks();
+        lock.readLock().lock();
+        try{
+            return taskById(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Task taskById(int id){
+        int slot = taskSlots.get(id);
+        if(slot < 0){
+            return null;
         }
-        return null;
+        return tasks.get(slot);
     }
 
     /**
      * Filters the project's tasks using specific matching strategy
-     * The returned list is sorted according to the natural order of Task
+     * The matcher is first planned against the indexes, so combined matchers check their
+     * most selective and cheapest parts first. The matcher's index lookup is used when
+     * it has one, otherwise the rows the matcher selects from the columns, such as tasks updated
+     * since a date, when they are at most 1/16 of the tasks, otherwise all tasks are scanned in
+     * their stored natural order.
+     * The returned list is sorted according to the natural order of Task,
+     * ties are ordered by id. Lookups that already come out sorted are not sorted again.
+     * If the tasks are off heap, the stored records are read instead, see offloadTasks.
      * @param matcher
      * @return A sorted list of tasks
      */
     public List<Task> findTasks(ITaskMatcher matcher){
-        List<Task> taskMatcher = new ArrayList<>();
-        for(Task task : tasks){
-            if(matcher.match(task)){
-                taskMatcher.add(task);
-            }
+        OffHeapTasks stored = offHeapTasks();
+        if(stored != null){
+            return stored.stream().filter(matcher::match).collect(Collectors.toCollection(ArrayList::new));
+        }
+        loadDeferredTasks();
+        List<Task> taskMatcher;
+        lock.readLock().lock();
+        try{
+            taskMatcher = matching(matcher);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if(!isSorted(taskMatcher)){
+            taskMatcher.sort(Task.ORDER);
         }
-        Collections.sort(taskMatcher);
         return taskMatcher;
     }
 
+    /**
+     *
+     * @return the matching tasks in the order of the planned lookup, called holding the lock
+     */
+    private List<Task> matching(ITaskMatcher matcher){
+        List<Task> matches = new ArrayList<>();
+        ITaskMatcher planned = matcher.plan(indexes);
+        for(Task task : candidatesFor(planned)){
+            if(planned.match(task)){
+                matches.add(task);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     *
+     * @return the tasks of the selected rows in row order, called holding the lock
+     */
+    private List<Task> tasksIn(long[] rows){
+        List<Task> selected = new ArrayList<>(TaskColumns.count(rows));
+        for(int word = 0; word < rows.length; word++){
+            long bits = rows[word];
+            while(bits != 0){
+                selected.add(tasks.get(word << 6 | Long.numberOfTrailingZeros(bits)));
+                bits &= bits - 1;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Counts the tasks the matcher accepts, as findTasks(matcher).size() would.
+     * Matchers that can select rows from the columns are counted with a few passes over
+     * primitive arrays, without visiting the tasks. Other matchers are evaluated task by task.
+     * If the tasks are off heap, the stored records are read instead, see offloadTasks.
+     * @param matcher
+     * @return the number of matching tasks
+     */
+    public int countTasks(ITaskMatcher matcher){
+        OffHeapTasks stored = offHeapTasks();
+        if(stored != null){
+            return (int) stored.stream().filter(matcher::match).count();
+        }
+        loadDeferredTasks();
+        lock.readLock().lock();
+        try{
+            long[] rows = matcher.select(columns);
+            return rows != null ? TaskColumns.count(rows) : matching(matcher).size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Lazily filters the project's tasks, giving the same tasks in the same order as findTasks.
+     * Ordered index lookups are filtered while the stream is consumed, so anyMatch, count
+     * or reading the first few tasks allocates nothing in proportion to the project size.
+     * Lookups without an order (word and OR lookups) are sorted when the stream starts.
+     * The stream reads the live skip list indexes, so it reflects changes made while it is
+     * consumed and never throws ConcurrentModificationException, also when they are made
+     * by other threads.
+     * If the tasks are off heap, the stored records are decoded while the stream is consumed.
+     * @param matcher
+     * @return A lazy stream of the matching tasks in natural order
+     */
+    public Stream<Task> streamTasks(ITaskMatcher matcher){
+        OffHeapTasks stored = offHeapTasks();
+        if(stored != null){
+            return stored.stream().filter(matcher::match);
+        }
+        loadDeferredTasks();
+        ITaskMatcher planned;
+        Collection<Task> candidates;
+        lock.readLock().lock();
+        try{
+            planned = matcher.plan(indexes);
+            candidates = planned.candidates(indexes); // not the columns, their rows would be read now
+            if(candidates == null){
+                candidates = indexes.all();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Stream<Task> matches = candidates.stream().filter(planned::match);
+        if(!TaskIndexes.isOrdered(candidates)){
+            matches = matches.sorted(Task.ORDER);
+        }
+        return matches;
+    }
+
+    /**
+     * Returns one page of the tasks that findTasks(matcher) would return.
+     * Only offset + limit tasks are kept while filtering, so the cost is
+     * O(n log(offset + limit)) instead of sorting all matches.
+     * @param matcher
+     * @param limit the maximum number of tasks returned
+     * @param offset the number of matching tasks to skip
+     * @return A sorted list of at most limit tasks
+     */
+    public List<Task> findTasks(ITaskMatcher matcher, int limit, int offset){
+        if(limit < 0 || offset < 0){
+            throw new IllegalArgumentException("limit and offset must not be negative");
+        }
+        List<Task> page = findFirstTasks(matcher, null, (int) Math.min(Integer.MAX_VALUE, (long) limit + offset));
+        return page.subList(Math.min(offset, page.size()), page.size());
+    }
+
+    /**
+     * Returns the page of matching tasks following the given task, in the order of findTasks.
+     * Pass the last task of the previous page to get the next one (keyset pagination),
+     * or null for the first page. Unlike an offset, this stays correct when tasks are
+     * added or removed between calls.
+     * @param matcher
+     * @param after the last task of the previous page, or null
+     * @param limit the maximum number of tasks returned
+     * @return A sorted list of at most limit tasks
+     */
+    public List<Task> findTasksAfter(ITaskMatcher matcher, Task after, int limit){
+        if(limit < 0){
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        return findFirstTasks(matcher, after, limit);
+    }
+
+    /**
+     * Takes the first limit matches after the given task. Sorted lookups are read
+     * from the given task onwards and stop at the limit, other lookups keep the
+     * smallest matches in a bounded max-heap.
+     */
+    private List<Task> findFirstTasks(ITaskMatcher matcher, Task after, int limit){
+        if(limit == 0){
+            return new ArrayList<>();
+        }
+        OffHeapTasks stored = offHeapTasks();
+        if(stored != null){
+            return stored.stream()
+                    .filter(task -> after == null || Task.ORDER.compare(task, after) > 0)
+                    .filter(matcher::match)
+                    .limit(limit)
+                    .collect(Collectors.toCollection(ArrayList::new));
+        }
+        loadDeferredTasks();
+        lock.readLock().lock();
+        try{
+            return firstTasks(matcher, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Task> firstTasks(ITaskMatcher matcher, Task after, int limit){
+        ITaskMatcher planned = matcher.plan(indexes);
+        Collection<Task> candidates = candidatesFor(planned);
+        if(TaskIndexes.isOrdered(candidates)){
+            if(after != null && candidates instanceof NavigableSet<Task> sorted){
+                candidates = sorted.tailSet(after, false);
+            }
+            List<Task> page = new ArrayList<>(Math.min(limit, 1024));
+            for(Task task : candidates){
+                if(after != null && Task.ORDER.compare(task, after) <= 0){
+                    continue;
+                }
+                if(planned.match(task)){
+                    page.add(task);
+                    if(page.size() == limit){
+                        break;
+                    }
+                }
+            }
+            return page;
+        }
+        PriorityQueue<Task> heap = new PriorityQueue<>(Math.min(limit, 1024) + 1, Task.ORDER.reversed());
+        for(Task task : candidates){
+            if(after != null && Task.ORDER.compare(task, after) <= 0){
+                continue;
+            }
+            if(heap.size() == limit && Task.ORDER.compare(task, heap.peek()) >= 0){
+                continue;
+            }
+            if(planned.match(task)){
+                heap.add(task);
+                if(heap.size() > limit){
+                    heap.poll();
+                }
+            }
+        }
+        List<Task> page = new ArrayList<>(heap);
+        page.sort(Task.ORDER);
+        return page;
+    }
+
+    /**
+     * The candidates to evaluate the planned matcher on: its index lookup, else the rows it selects
+     * from the columns when there are few enough to sort, else all tasks. Called holding the lock
+     */
+    private Collection<Task> candidatesFor(ITaskMatcher planned){
+        Collection<Task> candidates = planned.candidates(indexes);
+        if(candidates != null){
+            return candidates;
+        }
+        long[] rows = planned.select(columns);
+        if(rows != null && (long) TaskColumns.count(rows) * FEW_ROWS <= tasks.size()){
+            return tasksIn(rows);
+        }
+        return indexes.all();
+    }
+
+    private static boolean isSorted(List<Task> list){
+        for(int i = 1; i < list.size(); i++){
+            if(Task.ORDER.compare(list.get(i - 1), list.get(i)) > 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Creates a new Task, assigns it a unique ID, and adds it to the project
      * @param description
@@ -75,11 +379,447 @@ public class Project implements Comparable<Project>, Serializable {
      * @return A task with a description, priority and an ID
      */
     public Task addTask(String description, TaskPrio prio){
+        loadDeferredTasks();
+        lock.writeLock().lock();
+        try{
+            beforeChange();
+
+            Task nTask = new Task(description, prio, nextTaskId);
+            insertTask(nTask);
+            nextTaskId++;
+            ChangeListener listener = this.listener;
+            if(listener != null){
+                listener.taskAdded(this, nTask);
+            }
+            return nTask;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Creates a new Task with given values, such as an imported task, and assigns it
+     * a unique ID like addTask
+     * @param description
+     * @param prio
+     * @param state
+     * @param takenBy the person assigned to the task, or null
+     * @param lastUpdate
+     * @return the new task
+     */
+    public Task addTask(String description, TaskPrio prio, TaskState state, String takenBy, LocalDate lastUpdate){
+        loadDeferredTasks();
+        lock.writeLock().lock();
+        try{
+            beforeChange();
+
+            Task nTask = new Task(description, prio, nextTaskId, state, takenBy, lastUpdate);
+            insertTask(nTask);
+            nextTaskId++;
+            ChangeListener listener = this.listener;
+            if(listener != null){
+                listener.taskAdded(this, nTask);
+            }
+            return nTask;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Starts a batch of task changes that are applied together, see TaskBatch
+     * @return an empty batch for this project
+     */
+    public TaskBatch batch(){
+        return new TaskBatch(this);
+    }
+
+    /**
+     * Applies the operations of a batch in one hold of the write lock, all dated today,
+     * and reports them to the listener as one change. All or nothing: if a matcher,
+     * a new task or the listener throws, the changes made so far are rolled back
+     * before the exception is passed on, so nothing is left that was not reported
+     * @param operations
+     * @return the added and changed tasks
+     */
+    TaskBatch.Result applyBatch(List<TaskBatch.Operation> operations){
+        loadDeferredTasks();
+        LocalDate today = LocalDate.now();
+        lock.writeLock().lock();
+        try{
+            beforeChange();
+            int firstId = nextTaskId;
+            List<Task> added = new ArrayList<>();
+            Map<Integer, Task> changed = new LinkedHashMap<>(); // tasks that existed before, by id
+            Map<Integer, Task> originals = new HashMap<>(); // copies of the changed tasks before the batch, by id
+            Set<Integer> addedIds = new HashSet<>();
+            try{
+                for(TaskBatch.Operation operation : operations){
+                    if(operation.matcher == null){
+                        Task nTask = new Task(operation.description, operation.prio, nextTaskId, TaskState.TO_DO,
+                                null, today);
+                        insertTask(nTask);
+                        nextTaskId++;
+                        added.add(nTask);
+                        addedIds.add(nTask.getId());
+                        continue;
+                    }
+                    long[] rows = operation.matcher.select(columns); // the order of the changes does not matter
+                    for(Task task : rows != null ? tasksIn(rows) : matching(operation.matcher)){
+                        TaskState state = operation.state != null ? operation.state : task.getState();
+                        TaskPrio prio = operation.prio != null ? operation.prio : task.getPrio();
+                        String takenBy = operation.setsTakenBy ? operation.takenBy : task.getTakenBy();
+                        boolean existed = !addedIds.contains(task.getId());
+                        if(existed){
+                            originals.computeIfAbsent(task.getId(), id -> task.copy());
+                        }
+                        if(changeInBatch(task, state, prio, takenBy, today) && existed){
+                            changed.putIfAbsent(task.getId(), task);
+                        }
+                    }
+                }
+                TaskBatch.Result result = new TaskBatch.Result(Collections.unmodifiableList(added),
+                        List.copyOf(changed.values()));
+                ChangeListener listener = this.listener;
+                if(listener != null && (!added.isEmpty() || !changed.isEmpty())){
+                    listener.batchApplied(this, result);
+                }
+                return result;
+            } catch(RuntimeException | Error e){
+                rollBackBatch(originals, added, firstId);
+                throw e;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Undoes a failed batch: restores the values and versions of the changed tasks and removes
+     * the added ones, newest first so the others keep their positions. Called holding the write lock
+     * @param originals copies of the changed tasks before the batch, by id
+     * @param added
+     * @param firstId the next task ID before the batch
+     */
+    private void rollBackBatch(Map<Integer, Task> originals, List<Task> added, int firstId){
+        for(Task before : originals.values()){
+            Task task = tasks.get(taskSlots.get(before.getId()));
+            assignInBatch(task, before.getState(), before.getPrio(), before.getTakenBy(), before.getLastUpdate());
+            task.restoreVersion(before.getVersion());
+        }
+        for(int i = added.size() - 1; i >= 0; i--){
+            detachTask(taskSlots.get(added.get(i).getId()));
+        }
+        nextTaskId = firstId;
+    }
+
+    /**
+     * Sets the values of a task in a batch, moving it only in the indexes of the values
+     * that change. Called holding the write lock
+     * @return false if the task already has the values
+     */
+    private boolean changeInBatch(Task task, TaskState state, TaskPrio prio, String takenBy, LocalDate date){
+        if(task.getState() == state && task.getPrio() == prio && Objects.equals(task.getTakenBy(), takenBy)){
+            return false;
+        }
+        assignInBatch(task, state, prio, takenBy, date);
+        return true;
+    }
+
+    /**
+     * Sets the values of a task, see changeInBatch. Called holding the write lock
+     */
+    private void assignInBatch(Task task, TaskState state, TaskPrio prio, String takenBy, LocalDate date){
+        TaskState oldState = task.getState();
+        String oldTakenBy = task.getTakenBy();
+        boolean reorder = task.getPrio() != prio; // the natural order depends on the priority only
+        if(reorder){
+            indexes.remove(task);
+        }
+        if(oldState == TaskState.DONE){
+            doneCount--;
+        }
+        forgetDate(task.getLastUpdate());
+        task.assignValues(state, prio, takenBy, date);
+        if(reorder){
+            indexes.add(task);
+        } else {
+            indexes.move(task, oldState, oldTakenBy);
+        }
+        if(state == TaskState.DONE){
+            doneCount++;
+        }
+        countDate(date);
+        columns.set(taskSlots.get(task.getId()), task);
+    }
+
+    /**
+     * Adds a stored task with its original ID and values, used when loading projects.
+     * Later tasks get IDs above the restored one.
+     * @param id
+     * @param description
+     * @param prio
+     * @param state
+     * @param takenBy the person assigned to the task, or null
+     * @param lastUpdate
+     * @return the restored task
+     * @throws IllegalArgumentException if the project already has a task with the ID
+     */
+    public Task restoreTask(int id, String description, TaskPrio prio, TaskState state,
+                            String takenBy, LocalDate lastUpdate) throws IllegalArgumentException {
+        loadDeferredTasks();
+        lock.writeLock().lock();
+        try{
+            beforeChange();
+            if(taskSlots.get(id) >= 0){
+                throw new IllegalArgumentException("Task with id " + id + " already exists in " + title);
+            }
+            Task restored = new Task(description, prio, id, state, takenBy, lastUpdate);
+            insertTask(restored);
+            nextTaskId = Math.max(nextTaskId, id + 1);
+            return restored;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the stored values of a task without reporting the change, used when replaying changes.
+     * @param id
+     * @param state
+     * @param prio
+     * @param takenBy the person assigned to the task, or null
+     * @param lastUpdate
+     * @return the updated task
+     * @throws IllegalArgumentException if the project has no task with the ID
+     */
+    public Task restoreTaskValues(int id, TaskState state, TaskPrio prio, String takenBy, LocalDate lastUpdate)
+            throws IllegalArgumentException {
+        loadDeferredTasks();
+        lock.writeLock().lock();
+        try{
+            Task task = taskById(id);
+            if(task == null){
+                throw new IllegalArgumentException("Task with id " + id + " does not exist in " + title);
+            }
+            task.restoreValues(state, prio, takenBy, lastUpdate);
+            return task;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Makes the project load its stored tasks on first use instead of now.
+     * Until then the task count, state and last update are answered from the given summary.
+     * Used by stores that keep the tasks on disk, see io.MappedProjectStore.
+     * @param loader adds the stored tasks when they are first needed
+     * @param taskCount the number of stored tasks
+     * @param doneCount the number of stored tasks that are done
+     * @param lastUpdated the stored result of getLastUpdated
+     * @throws IllegalStateException if the project already has tasks
+     */
+    public void deferTasks(TaskLoader loader, int taskCount, int doneCount, LocalDate lastUpdated)
+            throws IllegalStateException {
+        lock.writeLock().lock();
+        try{
+            if(!tasks.isEmpty() || taskLoader != null){
+                throw new IllegalStateException("Project " + title + " already has tasks");
+            }
+            this.deferredTaskCount = taskCount;
+            this.deferredDoneCount = doneCount;
+            this.deferredLastUpdated = lastUpdated;
+            this.taskLoader = loader;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the tasks out of the Java heap into fixed-width off-heap records, see OffHeapTasks.
+     * The project then holds no task objects and answers its summary like a deferred project.
+     * findTasks, countTasks and streamTasks read the records, decoding each one they visit
+     * into a read-only copy of the task, so searches and exports leave the tasks off heap.
+     * They scan every record, since the indexes are dropped with the task objects.
+     * Changes restore the tasks as new Task objects: getTaskById of an existing task, addTask,
+     * removeTask, batch and the restore methods. Task objects obtained before, and the copies
+     * read from the records, keep their values but their setters throw IllegalStateException,
+     * look the tasks up again by ID to change them.
+     * @return the number of tasks moved, 0 if the tasks are not loaded or there are none
+     * @throws IllegalStateException if the tasks are too large for one off-heap buffer
+     */
+    public int offloadTasks() throws IllegalStateException {
+        lock.writeLock().lock();
+        try{
+            if(taskLoader != null || tasks.isEmpty()){
+                return 0;
+            }
+            beforeChange(); // a snapshot waiting to copy the tasks copies them now
+            OffHeapTasks stored = OffHeapTasks.store(indexes.all());
+            this.deferredTaskCount = tasks.size();
+            this.deferredDoneCount = doneCount;
+            this.deferredLastUpdated = lastUpdated();
+            for(Task task : tasks){
+                task.offload();
+            }
+            tasks.clear();
+            if(tasks instanceof ArrayList<Task> list){
+                list.trimToSize();
+            }
+            this.taskSlots = new IntIntMap();
+            this.columns = new TaskColumns();
+            this.indexes = new TaskIndexes(this::taskById, columns);
+            this.updateDateCounts = new TreeMap<>();
+            this.latestUpdate = null;
+            this.doneCount = 0;
+            this.taskLoader = stored;
+            return stored.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @return the loader of the stored tasks, or null if the tasks are loaded
+     */
+    public TaskLoader getDeferredTaskLoader(){
+        return taskLoader;
+    }
 
-        Task nTask = new Task(description, prio, nextTaskId);
-        tasks.add(nTask);
-        nextTaskId++;
-        return nTask;
+    /**
+     *
+     * @return the stored tasks if they were moved off heap and are not restored, otherwise null
+     */
+    private OffHeapTasks offHeapTasks(){
+        return taskLoader instanceof OffHeapTasks stored ? stored : null;
+    }
+
+    /**
+     * Loads the stored tasks if they are not loaded yet, must not be called holding the read lock
+     */
+    private void loadDeferredTasks(){
+        if(taskLoader == null){
+            return;
+        }
+        lock.writeLock().lock();
+        try{
+            TaskLoader loader = taskLoader;
+            if(loader != null){
+                beforeChange();
+                taskLoader = null; // restoreTask below must not load again
+                loader.loadTasks(this);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void lockForWrite(){
+        lock.writeLock().lock();
+    }
+
+    void unlockForWrite(){
+        lock.writeLock().unlock();
+    }
+
+    /**
+     * Sets the listener told about changes to the tasks, or null.
+     * Changes in progress are reported to the old listener.
+     * @param listener
+     */
+    void setChangeListener(ChangeListener listener){
+        lock.writeLock().lock();
+        try{
+            this.listener = listener;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    ChangeListener getChangeListener(){
+        return listener;
+    }
+
+    /**
+     * Captures the project's values for a snapshot, see ProjectsSnapshot
+     * @param copyOnWrite true to copy the tasks before the next change,
+     * false if the tasks are read before the project changes
+     * @return the captured values
+     */
+    ProjectSnapshot capture(boolean copyOnWrite){
+        lock.writeLock().lock();
+        try{
+            TaskLoader loader = taskLoader;
+            if(loader != null){
+                return new ProjectSnapshot(this, false, deferredTaskCount, deferredDoneCount,
+                        deferredLastUpdated, loader);
+            }
+            ProjectSnapshot view = new ProjectSnapshot(this, copyOnWrite, tasks.size(), doneCount,
+                    lastUpdated(), null);
+            if(copyOnWrite){
+                snapshot = view;
+            }
+            return view;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Lets a snapshot copy the tasks before they change, called holding the write lock
+     */
+    private void beforeChange(){
+        ProjectSnapshot view = snapshot;
+        if(view != null){
+            snapshot = null;
+            view.copyTasks();
+        }
+    }
+
+    void releaseSnapshot(ProjectSnapshot view){
+        SNAPSHOT.compareAndSet(this, view, null);
+    }
+
+    /**
+     * Lets the snapshot copy the tasks now, holding the read lock so they cannot change meanwhile
+     * @param view
+     */
+    void copyTasksInto(ProjectSnapshot view){
+        lock.readLock().lock();
+        try{
+            view.copyTasks();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @return detached copies of the tasks, called holding the lock
+     */
+    List<Task> copyTasks(){
+        List<Task> copies = new ArrayList<>(tasks.size());
+        for(Task task : tasks){
+            copies.add(task.copy());
+        }
+        return copies;
+    }
+
+    /**
+     *
+     * @return an unmodifiable view of the tasks
+     */
+    List<Task> viewTasks(){
+        return Collections.unmodifiableList(tasks);
+    }
+
+    private void insertTask(Task task){
+        taskSlots.put(task.getId(), tasks.size());
+        tasks.add(task);
+        task.setOwner(this);
+        indexTask(task);
+        indexes.addText(task);
     }
 
     /**
@@ -89,7 +829,94 @@ public class Project implements Comparable<Project>, Serializable {
      */
 
     public boolean removeTask(Task task){
-        return tasks.remove(task);
+        loadDeferredTasks();
+        lock.writeLock().lock();
+        try{
+            beforeChange();
+            int slot = taskSlots.get(task.getId());
+            if(slot < 0 || !tasks.get(slot).equals(task)){
+                return false;
+            }
+            Task removed = detachTask(slot);
+            ChangeListener listener = this.listener;
+            if(listener != null){
+                listener.taskRemoved(this, removed);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the task at the slot out of the list, the indexes and the aggregates, without reporting it.
+     * Called holding the write lock
+     * @return the removed task
+     */
+    private Task detachTask(int slot){
+        Task removed = tasks.get(slot);
+        // move the last task into the freed position so removal is O(1)
+        Task last = tasks.remove(tasks.size() - 1);
+        if(slot < tasks.size()){
+            tasks.set(slot, last);
+            taskSlots.put(last.getId(), slot);
+        }
+        columns.remove(slot);
+        unindexTask(removed);
+        indexes.removeText(removed);
+        taskSlots.remove(removed.getId());
+        removed.setOwner(null);
+        return removed;
+    }
+
+    /**
+     * Adds the task to the secondary indexes and the state and date aggregates
+     * and stores its values in the columns, called by Task after a change, holding the write lock
+     * @param task
+     */
+    void indexTask(Task task){
+        indexes.add(task);
+        columns.set(taskSlots.get(task.getId()), task);
+        if(task.getState() == TaskState.DONE){
+            doneCount++;
+        }
+        countDate(task.getLastUpdate());
+    }
+
+    /**
+     * Removes the task from the secondary indexes and the state and date aggregates,
+     * called by Task before a change, holding the write lock
+     * @param task
+     */
+    void unindexTask(Task task){
+        beforeChange();
+        indexes.remove(task);
+        if(task.getState() == TaskState.DONE){
+            doneCount--;
+        }
+        forgetDate(task.getLastUpdate());
+    }
+
+    private void countDate(LocalDate date){
+        updateDateCounts.merge(date, 1, Integer::sum);
+        if(latestUpdate == null || date.isAfter(latestUpdate)){
+            latestUpdate = date;
+        }
+    }
+
+    private void forgetDate(LocalDate date){
+        Integer count = updateDateCounts.get(date);
+        if(count == null){
+            return;
+        }
+        if(count > 1){
+            updateDateCounts.put(date, count - 1);
+        } else {
+            updateDateCounts.remove(date);
+            if(date.equals(latestUpdate)){
+                latestUpdate = updateDateCounts.isEmpty() ? null : updateDateCounts.lastKey();
+            }
+        }
     }
 
 
@@ -101,6 +928,51 @@ public class Project implements Comparable<Project>, Serializable {
         return title;
     }
 
+    /**
+     *
+     * @return The projects description
+     */
+    public String getDescription(){
+        return description;
+    }
+
+    /**
+     *
+     * @return the date the project was created
+     */
+    public LocalDate getCreated(){
+        return created;
+    }
+
+    /**
+     *
+     * @return the ID the next added task will get
+     */
+    public int getNextTaskId(){
+        lock.readLock().lock();
+        try{
+            return nextTaskId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     *
+     * @return the number of tasks in the project
+     */
+    public int getTaskCount(){
+        lock.readLock().lock();
+        try{
+            if(taskLoader != null){
+                return deferredTaskCount;
+            }
+            return tasks.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      *
      * @return The projects ID
@@ -111,41 +983,50 @@ public class Project implements Comparable<Project>, Serializable {
 
     /**
      * Determines the current state of the project based on its tasks
+     * using the running count of done tasks
      * @return The ProjectState (EMPTY, ONGOING, or COMPLETED)
      */
     public ProjectState getState() {
-        if(tasks.isEmpty()){
-            return ProjectState.EMPTY;
+        int taskCount;
+        int done;
+        lock.readLock().lock();
+        try{
+            boolean deferred = taskLoader != null;
+            taskCount = deferred ? deferredTaskCount : tasks.size();
+            done = deferred ? deferredDoneCount : doneCount;
+        } finally {
+            lock.readLock().unlock();
         }
-        boolean allDone = true;
-        for(Task task : tasks){
-            if(task.getState() != TaskState.DONE){
-                allDone = false;
-                break;
-            }
+        if(taskCount == 0){
+            return ProjectState.EMPTY;
         }
-        if(allDone){
+        if(done == taskCount){
             return ProjectState.COMPLETED;
         }
         return ProjectState.ONGOING;
     }
 
     /**
-     * Calculates the most recent update of the project
+     * The most recent update of the project, kept up to date as tasks change
      * @return the LocalDate of the most recent activity
      */
     public LocalDate getLastUpdated(){
-        if(tasks.isEmpty()){
-            return created;
+        lock.readLock().lock();
+        try{
+            return lastUpdated();
+        } finally {
+            lock.readLock().unlock();
         }
-        LocalDate lastUpdated = created;
-        for(Task task : tasks){
-            LocalDate tasksDate = task.getLastUpdate();
-            if(tasksDate.isAfter(lastUpdated)){
-                lastUpdated = tasksDate;
-            }
+    }
+
+    private LocalDate lastUpdated(){
+        if(taskLoader != null){
+            return deferredLastUpdated;
         }
-        return lastUpdated;
+        if(latestUpdate == null || !latestUpdate.isAfter(created)){
+            return created;
+        }
+        return latestUpdate;
     }
 
     /**
@@ -173,14 +1054,53 @@ public class Project implements Comparable<Project>, Serializable {
         return Objects.hashCode(title);
     }
 
+    /**
+     * Restores the serialized fields and rebuilds the indexes,
+     * which are not part of the serialized form
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantReadWriteLock();
+        taskSlots = new IntIntMap(tasks.size());
+        columns = new TaskColumns();
+        indexes = new TaskIndexes(this::taskById, columns);
+        updateDateCounts = new TreeMap<>();
+        for(int slot = 0; slot < tasks.size(); slot++){
+            Task task = tasks.get(slot);
+            taskSlots.put(task.getId(), slot);
+            task.setOwner(this);
+            indexTask(task);
+            indexes.addText(task);
+        }
+    }
+
+    /**
+     * Loads deferred tasks first, they are part of the serialized form
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        loadDeferredTasks();
+        lock.readLock().lock();
+        try{
+            out.defaultWriteObject();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     @Override
     public String toString() {
-        return "Project{" +
-                "tasks=" + tasks +
-                ", title='" + title + '\'' +
-                ", id=" + id +
-                ", description='" + description + '\'' +
-                ", created=" + created +
-                '}';
+        loadDeferredTasks();
+        lock.readLock().lock();
+        try{
+            return "Project{" +
+                    "tasks=" + tasks +
+                    ", title='" + title + '\'' +
+                    ", id=" + id +
+                    ", description='" + description + '\'' +
+                    ", created=" + created +
+                    '}';
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 }
@@ -0,0 +1,162 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * The values of one project at the moment a ProjectsSnapshot was captured.
+ * The tasks are not copied when capturing. They are copied on the first change to
+ * the project after the capture, or when the snapshot reads them, whichever comes first.
+ * Projects whose tasks were not loaded keep their TaskLoader instead of tasks.
+ */
+
+public class ProjectSnapshot {
+    private final Project project;
+    private final boolean copyOnWrite;
+    private final int id;
+    private final String title;
+    private final String description;
+    private final LocalDate created;
+    private final int nextTaskId;
+    private final int taskCount;
+    private final int doneCount;
+    private final LocalDate lastUpdated;
+    private final TaskLoader taskLoader;
+    private List<Task> tasks; // copies of the tasks, null until copied
+    private boolean released;
+
+    /**
+     * Created by Project.capture
+     */
+    ProjectSnapshot(Project project, boolean copyOnWrite, int taskCount, int doneCount, LocalDate lastUpdated,
+                    TaskLoader taskLoader) {
+        this.project = project;
+        this.copyOnWrite = copyOnWrite;
+        this.id = project.getId();
+        this.title = project.getTitle();
+        this.description = project.getDescription();
+        this.created = project.getCreated();
+        this.nextTaskId = project.getNextTaskId();
+        this.taskCount = taskCount;
+        this.doneCount = doneCount;
+        this.lastUpdated = lastUpdated;
+        this.taskLoader = taskLoader;
+    }
+
+    /**
+     * Copies the tasks, called by the project holding its lock before it changes
+     */
+    synchronized void copyTasks() {
+        if (tasks == null && !released) {
+            tasks = project.copyTasks();
+        }
+    }
+
+    /**
+     * The tasks as they were when captured, in no particular order.
+     * For projects captured with unloaded tasks the tasks are read with the TaskLoader.
+     * @return the tasks
+     * @throws IllegalStateException if the snapshot is released
+     */
+    public List<Task> getTasks() throws IllegalStateException {
+        if (copyOnWrite) {
+            project.copyTasksInto(this); // takes the project's lock before this one, like the project's changes
+        }
+        synchronized (this) {
+            if (released) {
+                throw new IllegalStateException("The snapshot of " + title + " is released");
+            }
+            if (tasks != null) {
+                return tasks;
+            }
+            if (taskLoader != null) {
+                Project loaded = new Project(title, description, id, created, nextTaskId);
+                taskLoader.loadTasks(loaded);
+                tasks = loaded.copyTasks();
+                return tasks;
+            }
+            return project.viewTasks();
+        }
+    }
+
+    /**
+     * Drops the copied tasks, the project stops copying them before changes
+     */
+    public synchronized void release() {
+        released = true;
+        tasks = null;
+        project.releaseSnapshot(this);
+    }
+
+    /**
+     *
+     * @return the loader of the project's tasks if they were not loaded when captured, or null
+     */
+    public TaskLoader getTaskLoader() {
+        return taskLoader;
+    }
+
+    /**
+     *
+     * @return the project ID
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     *
+     * @return the project title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     *
+     * @return the project description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     *
+     * @return the date the project was created
+     */
+    public LocalDate getCreated() {
+        return created;
+    }
+
+    /**
+     *
+     * @return the ID the next added task would get
+     */
+    public int getNextTaskId() {
+        return nextTaskId;
+    }
+
+    /**
+     *
+     * @return the number of tasks
+     */
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    /**
+     *
+     * @return the number of done tasks
+     */
+    public int getDoneCount() {
+        return doneCount;
+    }
+
+    /**
+     *
+     * @return the value of Project.getLastUpdated
+     */
+    public LocalDate getLastUpdated() {
+        return lastUpdated;
+    }
+}
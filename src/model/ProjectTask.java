@@ -0,0 +1,49 @@
+package model;
+
+import java.util.Comparator;
+
+/**
+ * A task together with the project it was found in, see ProjectsManager.findTasksAcrossProjects
+ */
+
+public final class ProjectTask {
+    // the natural order of the tasks, ties across projects ordered by project ID
+    static final Comparator<ProjectTask> ORDER = (first, second) -> {
+        int order = Task.ORDER.compare(first.task, second.task);
+        return order != 0 ? order : Integer.compare(first.project.getId(), second.project.getId());
+    };
+
+    private final Project project;
+    private final Task task;
+
+    /**
+     * This constructor is package-private, results are created by ProjectsManager
+     * @param project
+     * @param task
+     */
+    ProjectTask(Project project, Task task) {
+        this.project = project;
+        this.task = task;
+    }
+
+    /**
+     *
+     * @return the project the task was found in
+     */
+    public Project getProject() {
+        return project;
+    }
+
+    /**
+     *
+     * @return the task
+     */
+    public Task getTask() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return project.getTitle() + " (id " + project.getId() + "): " + task;
+    }
+}
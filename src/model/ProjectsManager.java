@@ -1,19 +1,44 @@
 package model;
 
 import exception.TitleNotUniqueException;
+import matcher.ITaskMatcher;
+import search.ProjectSearchIndex;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  * Managees all projects in the system
  * Responsible for creating new projects and handling serialization/deserialization
+ * Safe for concurrent use: a read-write lock guards the list of projects, so adding a project
+ * checks its title and allocates its ID atomically. Each project has its own lock for its tasks,
+ * taken after this one when both are needed.
  */
 
 public class ProjectsManager implements Serializable {
+        private static final long serialVersionUID = -776165557043599788L;
+
         private final List<Project> projects;
         private int nextProjectId;
+        private transient Map<String, Project> projectsByTitle;
+        private transient IntIntMap projectSlots; // project id -> position in projects
+        private transient ProjectSearchIndex searchIndex;
+        private transient ChangeListener listener;
+        private transient volatile ProjectsSnapshot snapshot; // the last captured snapshot
+        private transient ReentrantReadWriteLock lock; // guards the projects, the ID counter and the lookups
 
     /**
      *  Initializes a new ProjectsManager with an empty list of projects.
@@ -21,6 +46,10 @@ public class ProjectsManager implements Serializable {
     public ProjectsManager() {
         this.projects = new ArrayList<>();
         this.nextProjectId = 1;
+        this.projectsByTitle = new HashMap<>();
+        this.projectSlots = new IntIntMap();
+        this.searchIndex = new ProjectSearchIndex(this::projectById);
+        this.lock = new ReentrantReadWriteLock();
     }
 
     /**
@@ -28,20 +57,103 @@ public class ProjectsManager implements Serializable {
      * @return A copy of the list of all projects
      */
     public List<Project> getProjects() {
-        List<Project> projectCopy = new ArrayList<>(this.projects);
-        return projectCopy;
+        lock.readLock().lock();
+        try{
+            List<Project> projectCopy = new ArrayList<>(this.projects);
+            return projectCopy;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Clears the current list and replaces it with an incoming list of projects
      *          * (used during deserialization). Updates the nextProjectId accordingly.
+     * The current projects are kept if the incoming ones are rejected.
      * @param incomingProjects
+     * @throws TitleNotUniqueException if two incoming projects have the same title
+     * @throws IllegalArgumentException if two incoming projects have the same ID
      */
-    public void setProjects(List<Project> incomingProjects) {
+    public void setProjects(List<Project> incomingProjects) throws TitleNotUniqueException, IllegalArgumentException {
+        Set<String> titles = new HashSet<>(incomingProjects.size() * 2);
+        IntIntMap ids = new IntIntMap(incomingProjects.size());
+        for(Project project : incomingProjects){
+            if(!titles.add(project.getTitle())){
+                throw new TitleNotUniqueException("Project with title " + project.getTitle() + "already exists!");
+            }
+            if(ids.get(project.getId()) >= 0){
+                throw new IllegalArgumentException("Project with id " + project.getId() + " already exists");
+            }
+            ids.put(project.getId(), 0);
+        }
+        lock.writeLock().lock();
+        try{
             projects.clear();
             projects.addAll(incomingProjects);
+            rebuildIndexes();
 
-            nextProjectId = getHighestId() + 1;
+            nextProjectId = highestId() + 1;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the listener told about every later change to the projects and their tasks,
+     * used to record changes as they happen. Replacing the projects with setProjects
+     * is not reported.
+     * @param listener the listener, or null to stop reporting changes
+     */
+    public void setChangeListener(ChangeListener listener){
+        lock.writeLock().lock();
+        try{
+            this.listener = listener;
+            for(Project project : projects){
+                project.setChangeListener(listener);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Captures a consistent view of all projects and their tasks as they are now.
+     * Capturing takes time in proportion to the number of projects, not tasks,
+     * the view can then be read on another thread while the projects keep changing.
+     * Projects are captured one at a time under their own lock, so while other threads change
+     * tasks each project is consistent in itself, captured at a slightly different moment.
+     * @return the snapshot, to be released when done
+     * @throws IllegalStateException if the last captured snapshot is not released yet
+     */
+    public ProjectsSnapshot captureSnapshot() throws IllegalStateException {
+        lock.writeLock().lock();
+        try{
+            ProjectsSnapshot last = snapshot;
+            if(last != null && !last.isReleased()){
+                throw new IllegalStateException("A snapshot is already in progress");
+            }
+            List<ProjectSnapshot> views = new ArrayList<>(projects.size());
+            for(Project project : projects){
+                views.add(project.capture(true));
+            }
+            snapshot = new ProjectsSnapshot(views);
+            return snapshot;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildIndexes(){
+        projectsByTitle = new HashMap<>(projects.size() * 2);
+        projectSlots = new IntIntMap(projects.size());
+        searchIndex = new ProjectSearchIndex(this::projectById);
+        for(int slot = 0; slot < projects.size(); slot++){
+            Project project = projects.get(slot);
+            projectsByTitle.put(project.getTitle(), project);
+            projectSlots.put(project.getId(), slot);
+            searchIndex.add(project);
+            project.setChangeListener(listener);
+        }
     }
 
     /**
@@ -50,12 +162,12 @@ public class ProjectsManager implements Serializable {
      * @return true if the title is unique (or false)
      */
     public boolean isTitleUnique(String title){
-        for(Project project : projects){
-            if(project.getTitle().equals(title)){
-                return false;
-            }
+        lock.readLock().lock();
+        try{
+            return !projectsByTitle.containsKey(title);
+        } finally {
+            lock.readLock().unlock();
         }
-        return true;
     }
 
     /**
@@ -66,16 +178,89 @@ public class ProjectsManager implements Serializable {
      * @throws TitleNotUniqueException if the project wit the same title already exists
      */
     public Project addProject(String title, String description) throws TitleNotUniqueException {
+        lock.writeLock().lock();
+        try{
+            if(projectsByTitle.containsKey(title)){
+                throw new TitleNotUniqueException("Project with title " + title + "already exists!");
+            }
+
+            Project newProject = new Project(title, description, nextProjectId);
+            insertProject(newProject);
+            nextProjectId++;
+            if(listener != null){
+                listener.projectAdded(newProject);
+            }
+
+            return newProject;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        if(!isTitleUnique(title)){
-            throw new TitleNotUniqueException("Project with title " + title + "already exists!");
+    /**
+     * Creates a new project with a given creation date, such as an imported project,
+     * and assigns it a unique ID like addProject
+     * @param title
+     * @param description
+     * @param created
+     * @return the new project
+     * @throws TitleNotUniqueException if the project wit the same title already exists
+     */
+    public Project addProject(String title, String description, LocalDate created) throws TitleNotUniqueException {
+        lock.writeLock().lock();
+        try{
+            if(projectsByTitle.containsKey(title)){
+                throw new TitleNotUniqueException("Project with title " + title + "already exists!");
+            }
+            Project newProject = new Project(title, description, nextProjectId, created, 1);
+            insertProject(newProject);
+            nextProjectId++;
+            if(listener != null){
+                listener.projectAdded(newProject);
+            }
+            return newProject;
+        } finally {
+            lock.writeLock().unlock();
         }
+    }
 
-        Project newProject = new Project(title, description, nextProjectId);
-        projects.add(newProject);
-        nextProjectId++;
+    /**
+     * Adds a stored project with its original ID and values, used when loading projects.
+     * Later projects get IDs above the restored one.
+     * @param id
+     * @param title
+     * @param description
+     * @param created
+     * @param nextTaskId the ID the next task added to the project will get
+     * @return the restored project, without tasks
+     * @throws TitleNotUniqueException if the project with the same title already exists
+     * @throws IllegalArgumentException if a project with the same ID already exists
+     */
+    public Project restoreProject(int id, String title, String description, LocalDate created, int nextTaskId)
+            throws TitleNotUniqueException, IllegalArgumentException {
+        lock.writeLock().lock();
+        try{
+            if(projectsByTitle.containsKey(title)){
+                throw new TitleNotUniqueException("Project with title " + title + "already exists!");
+            }
+            if(projectSlots.get(id) >= 0){
+                throw new IllegalArgumentException("Project with id " + id + " already exists");
+            }
+            Project restored = new Project(title, description, id, created, nextTaskId);
+            insertProject(restored);
+            nextProjectId = Math.max(nextProjectId, id + 1);
+            return restored;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-        return newProject;
+    private void insertProject(Project project){
+        projectSlots.put(project.getId(), projects.size());
+        projects.add(project);
+        projectsByTitle.put(project.getTitle(), project);
+        searchIndex.add(project);
+        project.setChangeListener(listener);
     }
 
     /**
@@ -83,7 +268,27 @@ public class ProjectsManager implements Serializable {
      * @param project
      */
     public void removeProject(Project project){
-        projects.remove(project);
+        lock.writeLock().lock();
+        try{
+            Project existing = projectsByTitle.remove(project.getTitle());
+            if(existing == null){
+                return;
+            }
+            searchIndex.remove(existing);
+            int slot = projectSlots.remove(existing.getId());
+            // move the last project into the freed position so removal is O(1)
+            Project last = projects.remove(projects.size() - 1);
+            if(slot < projects.size()){
+                projects.set(slot, last);
+                projectSlots.put(last.getId(), slot);
+            }
+            existing.setChangeListener(null); // waits for changes in progress, later ones are not reported
+            if(listener != null){
+                listener.projectRemoved(existing);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -93,12 +298,20 @@ public class ProjectsManager implements Serializable {
      */
 
     public Project getProjectById(int id){
-        for(Project project : projects){
-            if(project.getId() == id){
-                return project;
-            }
+        lock.readLock().lock();
+        try{
+            return projectById(id);
+        } finally {
+            lock.readLock().unlock();
         }
-        return null;
+    }
+
+    private Project projectById(int id){
+        int slot = projectSlots.get(id);
+        if(slot < 0){
+            return null;
+        }
+        return projects.get(slot);
     }
 
     /**
@@ -109,19 +322,234 @@ public class ProjectsManager implements Serializable {
 
     public List<Project> findProjects(String titleStr){
         List<Project> projectList = new ArrayList<>();
-        for(Project project : projects){
-            if(project.getTitle().equals(titleStr)) {
-                projectList.add(project);
-            }
+        Project project;
+        lock.readLock().lock();
+        try{
+            project = projectsByTitle.get(titleStr);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if(project != null) {
+            projectList.add(project);
         }
         return projectList;
     }
 
+    /**
+     * Searches project titles and descriptions for the text, ignoring case.
+     * Titles starting with the text come first, then projects with a word starting
+     * with the text, then projects containing the text anywhere.
+     * @param text
+     * @param limit the maximum number of projects returned
+     * @return A List<Project> with the best matches first
+     */
+    public List<Project> searchProjects(String text, int limit){
+        lock.readLock().lock();
+        try{
+            return searchIndex.search(text, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves the tasks of all loaded projects off the Java heap, see Project.offloadTasks.
+     * Call it when the projects are idle, for example after an import, to keep the heap
+     * and the garbage collection pauses small however many tasks are stored.
+     * @return the number of tasks moved
+     */
+    public long offloadTasks(){
+        long moved = 0;
+        for(Project project : getProjects()){
+            moved += project.offloadTasks();
+        }
+        return moved;
+    }
+
+    /**
+     * Lazily filters the tasks of all projects, project by project,
+     * each project's tasks in natural order, see Project.streamTasks
+     * @param matcher
+     * @return A lazy stream of the matching tasks
+     */
+    public Stream<Task> streamTasks(ITaskMatcher matcher){
+        return getProjects().stream().flatMap(project -> project.streamTasks(matcher));
+    }
+
+    /**
+     *
+     * @return A lazy stream of the tasks of all projects
+     */
+    public Stream<Task> streamAllTasks(){
+        return streamTasks(task -> true);
+    }
+
+    /**
+     * Finds the matching tasks of all projects in the common fork/join pool,
+     * see findTasksAcrossProjects(ITaskMatcher, ForkJoinPool)
+     * @param matcher
+     * @return the matching tasks with their projects, sorted
+     */
+    public List<ProjectTask> findTasksAcrossProjects(ITaskMatcher matcher){
+        return findTasksAcrossProjects(matcher, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Finds the matching tasks of all projects. The projects are searched in parallel by
+     * fork/join tasks in the given pool, each with Project.findTasks. The sorted results are
+     * merged in the same tasks: every task merges the results of its projects with a k-way
+     * merge, and the results of split tasks are merged pairwise, so only the last merge of
+     * two lists is not shared by the threads.
+     * Each project is searched holding its own lock, not all at once, so every project's
+     * tasks are as they were when that project was searched.
+     * @param matcher
+     * @param pool
+     * @return the matching tasks with their projects, sorted according to the natural order
+     * of Task, ties ordered by task ID and then by project ID
+     */
+    public List<ProjectTask> findTasksAcrossProjects(ITaskMatcher matcher, ForkJoinPool pool){
+        List<Project> searched = getProjects();
+        int threshold = Math.max(1, searched.size() / (pool.getParallelism() * 8));
+        return pool.invoke(new ProjectSearch(searched, matcher, 0, searched.size(), threshold));
+    }
+
+    /**
+     * Searches a range of the projects, split in halves until at most threshold projects are left
+     */
+    private static final class ProjectSearch extends RecursiveTask<List<ProjectTask>> {
+        private static final long serialVersionUID = 1L;
+
+        // ForkJoinTask is Serializable, but a search is never serialized and matchers are not serializable
+        private final transient List<Project> projects;
+        private final transient ITaskMatcher matcher;
+        private final int from;
+        private final int to;
+        private final int threshold;
+
+        ProjectSearch(List<Project> projects, ITaskMatcher matcher, int from, int to, int threshold){
+            this.projects = projects;
+            this.matcher = matcher;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected List<ProjectTask> compute() {
+            if(to - from <= threshold){
+                List<Cursor> cursors = new ArrayList<>(to - from);
+                for(int i = from; i < to; i++){
+                    Project project = projects.get(i);
+                    cursors.add(new Cursor(project, project.findTasks(matcher)));
+                }
+                return merge(cursors);
+            }
+            int middle = (from + to) >>> 1;
+            ProjectSearch first = new ProjectSearch(projects, matcher, from, middle, threshold);
+            first.fork();
+            List<ProjectTask> second = new ProjectSearch(projects, matcher, middle, to, threshold).compute();
+            return merge(first.join(), second);
+        }
+    }
+
+    /**
+     * The next task of one project's sorted result, see merge
+     */
+    private static final class Cursor implements Comparable<Cursor> {
+        private final Project project;
+        private final List<Task> tasks;
+        private int next;
+        private Task head;
+
+        Cursor(Project project, List<Task> tasks){
+            this.project = project;
+            this.tasks = tasks;
+        }
+
+        /**
+         *
+         * @return false if the result has no more tasks
+         */
+        boolean advance(){
+            if(next == tasks.size()){
+                return false;
+            }
+            head = tasks.get(next++);
+            return true;
+        }
+
+        /**
+         * Orders the cursors by their next task like ProjectTask.ORDER
+         */
+        @Override
+        public int compareTo(Cursor other) {
+            int order = Task.ORDER.compare(head, other.head);
+            return order != 0 ? order : Integer.compare(project.getId(), other.project.getId());
+        }
+    }
+
+    /**
+     * Merges the sorted results of projects, keeping the next task of every project in a heap
+     */
+    private static List<ProjectTask> merge(List<Cursor> cursors){
+        int total = 0;
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, cursors.size()));
+        for(Cursor cursor : cursors){
+            total += cursor.tasks.size();
+            if(cursor.advance()){
+                heads.add(cursor);
+            }
+        }
+        List<ProjectTask> merged = new ArrayList<>(total);
+        while(!heads.isEmpty()){
+            Cursor cursor = heads.poll();
+            merged.add(new ProjectTask(cursor.project, cursor.head));
+            if(cursor.advance()){
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Merges two sorted lists of found tasks
+     */
+    private static List<ProjectTask> merge(List<ProjectTask> first, List<ProjectTask> second){
+        if(first.isEmpty()){
+            return second;
+        }
+        if(second.isEmpty()){
+            return first;
+        }
+        List<ProjectTask> merged = new ArrayList<>(first.size() + second.size());
+        int i = 0;
+        int j = 0;
+        while(i < first.size() && j < second.size()){
+            if(ProjectTask.ORDER.compare(first.get(i), second.get(j)) <= 0){
+                merged.add(first.get(i++));
+            } else {
+                merged.add(second.get(j++));
+            }
+        }
+        merged.addAll(first.subList(i, first.size()));
+        merged.addAll(second.subList(j, second.size()));
+        return merged;
+    }
+
     /**
      * Finds the highest existing project-ID used for nextProjectId after deserialization
      * @return The highers ID found (or 0 if the list is empty)
      */
     public int getHighestId(){
+        lock.readLock().lock();
+        try{
+            return highestId();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int highestId(){
         int highestId = 0;
 
         for(Project project : projects){
@@ -131,4 +559,13 @@ public class ProjectsManager implements Serializable {
         }
         return highestId;
     }
+
+    /**
+     * Restores the serialized fields and rebuilds the title and id indexes
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantReadWriteLock();
+        rebuildIndexes();
+    }
 }
@@ -0,0 +1,63 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A consistent point-in-time view of the projects of a ProjectsManager, see ProjectsManager.captureSnapshot.
+ * Capturing only records the projects and their own values, no tasks are copied.
+ * The first change to a project after the capture copies its tasks into the snapshot first
+ * (copy-on-write), so the snapshot can be read on another thread while the projects keep changing,
+ * and a change costs at most one copy of its project's tasks per snapshot.
+ * Release the snapshot when it is no longer read.
+ */
+
+public class ProjectsSnapshot {
+    private final List<ProjectSnapshot> projects;
+    private volatile boolean released;
+
+    ProjectsSnapshot(List<ProjectSnapshot> projects) {
+        this.projects = Collections.unmodifiableList(projects);
+    }
+
+    /**
+     * Views the projects without copy-on-write, their tasks are read when the view is read.
+     * Only for reading on the thread that changes the projects, before they change again.
+     * @param projects
+     * @return a view of the projects
+     */
+    public static ProjectsSnapshot of(List<Project> projects) {
+        List<ProjectSnapshot> views = new ArrayList<>(projects.size());
+        for (Project project : projects) {
+            views.add(project.capture(false));
+        }
+        return new ProjectsSnapshot(views);
+    }
+
+    /**
+     *
+     * @return the captured projects, in the order of ProjectsManager.getProjects
+     */
+    public List<ProjectSnapshot> getProjects() {
+        return projects;
+    }
+
+    /**
+     *
+     * @return true if release was called
+     */
+    public boolean isReleased() {
+        return released;
+    }
+
+    /**
+     * Releases all projects, see ProjectSnapshot.release
+     */
+    public void release() {
+        released = true;
+        for (ProjectSnapshot project : projects) {
+            project.release();
+        }
+    }
+}
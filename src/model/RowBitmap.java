@@ -0,0 +1,167 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of row numbers, kept up to date as rows are added and removed.
+ * The rows are split in chunks of 65536, as in Roaring bitmaps: a chunk with few rows
+ * stores their low 16 bits in a sorted char array, a chunk with many rows stores one bit
+ * per row in 1024 longs. Sparse sets such as the tasks of one person take two bytes per
+ * row, dense sets such as the tasks of one priority one bit per row.
+ */
+
+final class RowBitmap {
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 6);
+    private static final int MAX_ARRAY = 4096; // an array of more rows is larger than the bits
+    private static final int MIN_BITS = 2048; // fewer rows go back to an array, apart from MAX_ARRAY to avoid flapping
+
+    private Chunk[] chunks = new Chunk[1];
+    private int cardinality;
+
+    /**
+     * The rows of one chunk, as a sorted array or as bits
+     */
+    private static final class Chunk {
+        char[] values = new char[4]; // sorted low bits of the rows while words is null
+        long[] words; // one bit per row once the chunk is dense
+        int count;
+    }
+
+    /**
+     * Adds a row
+     * @param row
+     * @return true if the row was not in the set
+     */
+    boolean add(int row){
+        int index = row >>> CHUNK_SHIFT;
+        if(index >= chunks.length){
+            chunks = Arrays.copyOf(chunks, Math.max(index + 1, chunks.length * 2));
+        }
+        Chunk chunk = chunks[index];
+        if(chunk == null){
+            chunk = chunks[index] = new Chunk();
+        }
+        char low = (char) row;
+        if(chunk.words != null){
+            long bit = 1L << low;
+            if((chunk.words[low >>> 6] & bit) != 0){
+                return false;
+            }
+            chunk.words[low >>> 6] |= bit;
+        } else {
+            int position = Arrays.binarySearch(chunk.values, 0, chunk.count, low);
+            if(position >= 0){
+                return false;
+            }
+            if(chunk.count == MAX_ARRAY){
+                toBits(chunk);
+                chunk.words[low >>> 6] |= 1L << low;
+            } else {
+                position = -(position + 1);
+                if(chunk.count == chunk.values.length){
+                    chunk.values = Arrays.copyOf(chunk.values, Math.min(MAX_ARRAY, chunk.count * 2));
+                }
+                System.arraycopy(chunk.values, position, chunk.values, position + 1, chunk.count - position);
+                chunk.values[position] = low;
+            }
+        }
+        chunk.count++;
+        cardinality++;
+        return true;
+    }
+
+    /**
+     * Removes a row
+     * @param row
+     * @return true if the row was in the set
+     */
+    boolean remove(int row){
+        int index = row >>> CHUNK_SHIFT;
+        Chunk chunk = index < chunks.length ? chunks[index] : null;
+        if(chunk == null){
+            return false;
+        }
+        char low = (char) row;
+        if(chunk.words != null){
+            long bit = 1L << low;
+            if((chunk.words[low >>> 6] & bit) == 0){
+                return false;
+            }
+            chunk.words[low >>> 6] &= ~bit;
+            chunk.count--;
+            if(chunk.count < MIN_BITS){
+                toValues(chunk);
+            }
+        } else {
+            int position = Arrays.binarySearch(chunk.values, 0, chunk.count, low);
+            if(position < 0){
+                return false;
+            }
+            System.arraycopy(chunk.values, position + 1, chunk.values, position, chunk.count - position - 1);
+            chunk.count--;
+        }
+        cardinality--;
+        if(chunk.count == 0){
+            chunks[index] = null;
+        }
+        return true;
+    }
+
+    /**
+     *
+     * @return the number of rows in the set
+     */
+    int cardinality(){
+        return cardinality;
+    }
+
+    /**
+     * Sets the bits of the rows in a selection, see TaskColumns
+     * @param rows a selection with room for every row in the set
+     */
+    void orInto(long[] rows){
+        for(int index = 0; index < chunks.length; index++){
+            Chunk chunk = chunks[index];
+            if(chunk == null){
+                continue;
+            }
+            int firstWord = index * CHUNK_WORDS;
+            if(chunk.words != null){
+                int end = Math.min(CHUNK_WORDS, rows.length - firstWord);
+                for(int word = 0; word < end; word++){
+                    rows[firstWord + word] |= chunk.words[word];
+                }
+            } else {
+                for(int i = 0; i < chunk.count; i++){
+                    char low = chunk.values[i];
+                    rows[firstWord + (low >>> 6)] |= 1L << low;
+                }
+            }
+        }
+    }
+
+    private static void toBits(Chunk chunk){
+        long[] words = new long[CHUNK_WORDS];
+        for(int i = 0; i < chunk.count; i++){
+            char low = chunk.values[i];
+            words[low >>> 6] |= 1L << low;
+        }
+        chunk.words = words;
+        chunk.values = null;
+    }
+
+    private static void toValues(Chunk chunk){
+        char[] values = new char[chunk.count];
+        int count = 0;
+        for(int word = 0; word < CHUNK_WORDS; word++){
+            long bits = chunk.words[word];
+            while(bits != 0){
+                values[count++] = (char) (word << 6 | Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        chunk.values = values;
+        chunk.words = null;
+    }
+}
@@ -0,0 +1,74 @@
+package model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The names tasks are taken by, shared by all tasks.
+ * Tasks store the number of a name instead of the name, so every person's name is held once
+ * however many tasks they have taken. Number 0 stands for unassigned.
+ * Names are never removed, the set of people is small compared to the number of tasks.
+ * Safe for concurrent use.
+ */
+
+final class TakenByNames {
+    static final int NONE = 0;
+
+    private static final Map<String, Integer> numbers = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[16]; // number -> name, slot 0 unused
+    private static int count = 1; // next free number, guarded by the class
+
+    private TakenByNames(){
+    }
+
+    /**
+     * Looks up the number of a name, giving it the next number the first time
+     * @param name
+     * @return the number of the name, NONE for null
+     */
+    static int numberOf(String name){
+        if(name == null){
+            return NONE;
+        }
+        Integer number = numbers.get(name);
+        return number != null ? number : add(name);
+    }
+
+    /**
+     * Looks up the number of a name without adding it
+     * @param name
+     * @return the number of the name, NONE for null or a name no task was ever taken by
+     */
+    static int find(String name){
+        if(name == null){
+            return NONE;
+        }
+        Integer number = numbers.get(name);
+        return number != null ? number : NONE;
+    }
+
+    private static synchronized int add(String name){
+        Integer number = numbers.get(name);
+        if(number != null){
+            return number;
+        }
+        String[] current = names;
+        if(count == current.length){
+            current = Arrays.copyOf(current, count * 2);
+        }
+        current[count] = name;
+        names = current; // publish before the number is handed out
+        numbers.put(name, count);
+        return count++;
+    }
+
+    /**
+     *
+     * @param number a number returned by numberOf
+     * @return the name, null for NONE
+     */
+    static String name(int number){
+        return number == NONE ? null : names[number];
+    }
+}
@@ -1,22 +1,77 @@
 package model;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.time.LocalDate;
+import java.util.Comparator;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * The class represent a single task within a Project.
  * Tasks are identifies by ID within the Project
  * and are naturally ordered by Prio and Description
+ * Setters hold the write lock of the owning project, so the project's indexes change
+ * together with the task. Getters read the current values without locking.
+ *
+ * Every change increments the task's version. To update a task without overwriting
+ * changes made since it was read, read getVersion before the values and update with the
+ * compareAndSet methods, which change nothing and return false if the version moved on.
+ *
+ * Tasks are stored compactly, as there can be millions of them: the state and the priority
+ * are packed into one byte, the last update is kept as an epoch day and the person the task
+ * is taken by as a number in TakenByNames. The getters return the usual values.
+ * When a project moves its tasks off heap the task objects are replaced, the setters of
+ * the old objects and of the copies read from the off-heap records throw
+ * IllegalStateException, see Project.offloadTasks.
  */
 
 public class Task  implements Comparable<Task>, Serializable {
+    private static final long serialVersionUID = -9199898907208841190L;
+    // natural order with the id as tie breaker, the key of the project's sorted indexes
+    static final Comparator<Task> ORDER = Comparator.<Task>naturalOrder().thenComparingInt(Task::getId);
+    // the serialized form is the original one with plain values, see writeObject
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("description", String.class),
+            new ObjectStreamField("id", int.class),
+            new ObjectStreamField("takenBy", String.class),
+            new ObjectStreamField("state", TaskState.class),
+            new ObjectStreamField("lastUpdate", LocalDate.class),
+            new ObjectStreamField("prio", TaskPrio.class)
+    };
+    private static final TaskState[] STATES = TaskState.values();
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final AtomicIntegerFieldUpdater<Task> TAKEN_BY =
+            AtomicIntegerFieldUpdater.newUpdater(Task.class, "takenBy");
+    private static final AtomicIntegerFieldUpdater<Task> VERSION =
+            AtomicIntegerFieldUpdater.newUpdater(Task.class, "version");
+    private static final VarHandle STATE_AND_PRIO;
+    // the task built by readObject, handed to readResolve on the same thread right after
+    private static final ThreadLocal<Task> READ = new ThreadLocal<>();
+
+    static {
+        try{
+            STATE_AND_PRIO = MethodHandles.lookup().findVarHandle(Task.class, "stateAndPrio", byte.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final String description;
     private final int id;
-    private String takenBy;
-    private TaskState state;
-    private LocalDate lastUpdate;
-    private TaskPrio prio;
+    private volatile int takenBy; // number in TakenByNames
+    private volatile byte stateAndPrio; // state ordinal in the high bits, prio ordinal in the low bits
+    private volatile int lastUpdate; // epoch day
+    private transient volatile Project owner; // notified around changes to keep its indexes in sync
+    private transient volatile int version; // number of changes since the task was created or loaded, unsigned
+    private transient volatile boolean offloaded; // moved off heap with its project, see Project.offloadTasks
 
     /**
      * This constructor is package-private to ensure that the code has
@@ -28,13 +83,42 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     Task(String description, TaskPrio prio, int id){
+        this(description, prio, id, TaskState.TO_DO, null, LocalDate.now());
+    }
+
+    /**
+     * Recreates a stored task with all its values, used when loading projects.
+     * @param description
+     * @param prio
+     * @param id
+     * @param state
+     * @param takenBy
+     * @param lastUpdate
+     */
+
+    Task(String description, TaskPrio prio, int id, TaskState state, String takenBy, LocalDate lastUpdate){
         this.description = description;
         this.id = id;
-        this.prio = prio;
+        this.stateAndPrio = pack(state, prio);
+        this.takenBy = TakenByNames.numberOf(takenBy);
+        this.lastUpdate = epochDay(lastUpdate);
+    }
+
+    private Task(Task other){
+        this.description = other.description;
+        this.id = other.id;
+        this.stateAndPrio = other.stateAndPrio;
+        this.takenBy = other.takenBy;
+        this.lastUpdate = other.lastUpdate;
+        this.version = other.version;
+    }
+
+    private static byte pack(TaskState state, TaskPrio prio){
+        return (byte) (state.ordinal() << 4 | prio.ordinal());
+    }
 
-        this.takenBy = null;
-        this.state = TaskState.TO_DO;
-        this.lastUpdate = LocalDate.now();
+    private static int epochDay(LocalDate date){
+        return Math.toIntExact(date.toEpochDay());
     }
 
     /**
@@ -43,7 +127,16 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public TaskState getState(){
-        return state;
+        return STATES[stateAndPrio >> 4];
+    }
+
+    /**
+     *
+     * @return the description of the task
+     */
+
+    public String getDescription(){
+        return description;
     }
 
     /**
@@ -52,6 +145,14 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public LocalDate getLastUpdate(){
+        return LocalDate.ofEpochDay(lastUpdate);
+    }
+
+    /**
+     *
+     * @return the date of the last update as an epoch day, for the columns
+     */
+    int getLastUpdateDay(){
         return lastUpdate;
     }
 
@@ -61,7 +162,7 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public TaskPrio getPrio(){
-        return prio;
+        return PRIOS[stateAndPrio & 0xF];
     }
 
     /**
@@ -71,7 +172,7 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public String getTakenBy(){
-        return takenBy;
+        return TakenByNames.name(takenBy);
     }
 
     /**
@@ -83,26 +184,146 @@ public class Task  implements Comparable<Task>, Serializable {
         return id;
     }
 
+    /**
+     *
+     * @return the number of changes to the task since it was created or loaded
+     */
+
+    public long getVersion(){
+        return Integer.toUnsignedLong(version);
+    }
+
+    /**
+     * Counts a change if the version is still the expected one
+     * @param expectedVersion
+     * @return false if the version moved on
+     */
+    private boolean advanceVersion(long expectedVersion){
+        return (expectedVersion >>> 32) == 0
+                && VERSION.compareAndSet(this, (int) expectedVersion, (int) expectedVersion + 1);
+    }
+
     /**
      * Updates the timestamp to the current date
      */
 
     private void  lastUpdated(){
-        this.lastUpdate = LocalDate.now();
+        this.lastUpdate = epochDay(LocalDate.now());
+    }
+
+    /**
+     *
+     * @return a copy of the task and its version that belongs to no project
+     */
+    Task copy(){
+        return new Task(this);
     }
 
     /**
-     * Assigns the task to a person and does it only once
+     * Sets the project whose indexes contain this task, or null when removed
+     * @param owner
+     */
+    void setOwner(Project owner){
+        this.owner = owner;
+    }
+
+    /**
+     * Detaches the task from its project when the project's tasks move off heap, or marks
+     * a copy read from the off-heap records. The project restores the tasks as new objects,
+     * so changes to this one would be lost
+     */
+    void offload(){
+        offloaded = true;
+        owner = null;
+    }
+
+    /**
+     * Locks the owning project for writing, retrying if the task moves out of it meanwhile
+     * @return the locked project, or null if the task belongs to no project
+     * @throws IllegalStateException if the task moved off heap with its project
+     */
+    private Project lockOwner(){
+        while(true){
+            Project current = owner;
+            if(current == null){
+                if(offloaded){
+                    throw new IllegalStateException("Task " + id + " was moved off heap with its project,"
+                            + " get it again by ID to change it");
+                }
+                return null;
+            }
+            current.lockForWrite();
+            if(owner == current){
+                return current;
+            }
+            current.unlockForWrite();
+        }
+    }
+
+    private static void unlock(Project locked){
+        if(locked != null){
+            locked.unlockForWrite();
+        }
+    }
+
+    private void beforeUpdate(){
+        if(owner != null){
+            owner.unindexTask(this);
+        }
+    }
+
+    private void afterUpdate(){
+        if(owner != null){
+            owner.indexTask(this);
+        }
+    }
+
+    private ChangeListener changeListener(){
+        return owner == null ? null : owner.getChangeListener();
+    }
+
+    /**
+     * Assigns the task to a person and does it only once.
+     * The claim is a compare-and-set, so of several concurrent claims exactly one succeeds.
      * @param takenBy
      * @throws IllegalStateException if the task is already assigned
      */
 
     public void setTakenBy(String takenBy) throws IllegalStateException{
-        if(this.takenBy != null){
-            throw new IllegalStateException("Activity already occupied by: " + this.takenBy);
+        Project locked = lockOwner();
+        try{
+            claim(takenBy, true, locked);
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Assigns the task to a person if the task was not changed since the given version
+     * @param expectedVersion the version the task had when it was read
+     * @param takenBy
+     * @return false if the version moved on, nothing is changed then
+     * @throws IllegalStateException if the task is already assigned
+     */
+
+    public boolean compareAndSetTakenBy(long expectedVersion, String takenBy) throws IllegalStateException{
+        Project locked = lockOwner();
+        try{
+            if(getVersion() != expectedVersion){
+                return false;
+            }
+            String current = getTakenBy();
+            if(current != null){
+                throw new IllegalStateException("Activity already occupied by: " + current);
+            }
+            if(!advanceVersion(expectedVersion)){
+                return false;
+            }
+            claim(takenBy, false, locked);
+            return true;
+        } finally {
+            unlock(locked);
         }
-        this.takenBy = takenBy;
-        lastUpdated();
     }
 
     /**
@@ -111,8 +332,33 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public void setState(TaskState state){
-        this.state = state;
-        lastUpdated();
+        Project locked = lockOwner();
+        try{
+            VERSION.incrementAndGet(this);
+            changeState(state, locked);
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Sets the state of the task and updates the date if the task was not changed since the given version
+     * @param expectedVersion the version the task had when it was read
+     * @param state
+     * @return false if the version moved on, nothing is changed then
+     */
+
+    public boolean compareAndSetState(long expectedVersion, TaskState state){
+        Project locked = lockOwner();
+        try{
+            if(!advanceVersion(expectedVersion)){
+                return false;
+            }
+            changeState(state, locked);
+            return true;
+        } finally {
+            unlock(locked);
+        }
     }
 
     /**
@@ -121,8 +367,178 @@ public class Task  implements Comparable<Task>, Serializable {
      */
 
     public void setPrio(TaskPrio prio){
-        this.prio = prio;
+        Project locked = lockOwner();
+        try{
+            VERSION.incrementAndGet(this);
+            changePrio(prio, locked);
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Sets the priority of the task and updates the date if the task was not changed since the given version
+     * @param expectedVersion the version the task had when it was read
+     * @param prio
+     * @return false if the version moved on, nothing is changed then
+     */
+
+    public boolean compareAndSetPrio(long expectedVersion, TaskPrio prio){
+        Project locked = lockOwner();
+        try{
+            if(!advanceVersion(expectedVersion)){
+                return false;
+            }
+            changePrio(prio, locked);
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Changes the state, the priority and the person of the task together if the task was
+     * not changed since the given version. The version is checked once under the project's
+     * lock and either all given values are applied or none, counted as one change.
+     * @param expectedVersion the version the task had when it was read
+     * @param state the new state, or null to keep it
+     * @param prio the new priority, or null to keep it
+     * @param takenBy the person to assign the task to, or null to keep it
+     * @return false if the version moved on, nothing is changed then
+     * @throws IllegalStateException if takenBy is given and the task is already assigned, nothing is changed then
+     */
+
+    public boolean compareAndSet(long expectedVersion, TaskState state, TaskPrio prio, String takenBy)
+            throws IllegalStateException{
+        Project locked = lockOwner();
+        try{
+            if(getVersion() != expectedVersion){
+                return false;
+            }
+            String current = getTakenBy();
+            if(takenBy != null && current != null){
+                throw new IllegalStateException("Activity already occupied by: " + current);
+            }
+            if(state == null && prio == null && takenBy == null){
+                return true;
+            }
+            if(!advanceVersion(expectedVersion)){
+                return false;
+            }
+            if(state != null){
+                changeState(state, locked);
+            }
+            if(prio != null){
+                changePrio(prio, locked);
+            }
+            if(takenBy != null){
+                claim(takenBy, false, locked);
+            }
+            return true;
+        } finally {
+            unlock(locked);
+        }
+    }
+
+    /**
+     * Claims the task and reports it, called holding the owner's lock
+     * @param countChange false if a compare-and-set already counted the change in the version
+     */
+    private void claim(String takenBy, boolean countChange, Project locked){
+        String current = getTakenBy();
+        if(current != null){
+            throw new IllegalStateException("Activity already occupied by: " + current);
+        }
+        beforeUpdate();
+        if(!TAKEN_BY.compareAndSet(this, TakenByNames.NONE, TakenByNames.numberOf(takenBy))){
+            afterUpdate();
+            throw new IllegalStateException("Activity already occupied by: " + getTakenBy());
+        }
+        if(countChange){
+            VERSION.incrementAndGet(this);
+        }
         lastUpdated();
+        afterUpdate();
+        ChangeListener listener = changeListener();
+        if(listener != null){
+            listener.takenByChanged(locked, this);
+        }
+    }
+
+    private void changeState(TaskState state, Project locked){
+        beforeUpdate();
+        updateStateAndPrio(state, null);
+        lastUpdated();
+        afterUpdate();
+        ChangeListener listener = changeListener();
+        if(listener != null){
+            listener.stateChanged(locked, this);
+        }
+    }
+
+    private void changePrio(TaskPrio prio, Project locked){
+        beforeUpdate();
+        updateStateAndPrio(null, prio);
+        lastUpdated();
+        afterUpdate();
+        ChangeListener listener = changeListener();
+        if(listener != null){
+            listener.prioChanged(locked, this);
+        }
+    }
+
+    /**
+     * Replaces the state or the priority, whichever is not null, keeping the other one.
+     * A compare-and-set, so concurrent changes to a task without owner are not lost
+     */
+    private void updateStateAndPrio(TaskState state, TaskPrio prio){
+        byte current;
+        byte updated;
+        do{
+            current = stateAndPrio;
+            updated = pack(state != null ? state : STATES[current >> 4], prio != null ? prio : PRIOS[current & 0xF]);
+        } while(!STATE_AND_PRIO.compareAndSet(this, current, updated));
+    }
+
+    /**
+     * Sets stored values without reporting the change, see Project.restoreTaskValues.
+     * Called holding the owner's write lock
+     * @param state
+     * @param prio
+     * @param takenBy
+     * @param lastUpdate
+     */
+    void restoreValues(TaskState state, TaskPrio prio, String takenBy, LocalDate lastUpdate){
+        beforeUpdate();
+        this.stateAndPrio = pack(state, prio);
+        this.takenBy = TakenByNames.numberOf(takenBy);
+        this.lastUpdate = epochDay(lastUpdate);
+        VERSION.incrementAndGet(this);
+        afterUpdate();
+    }
+
+    /**
+     * Sets the version back to the one before a failed batch, see Project.applyBatch.
+     * Called holding the owner's write lock
+     * @param version
+     */
+    void restoreVersion(long version){
+        this.version = (int) version;
+    }
+
+    /**
+     * Sets the values of a batch change without touching the indexes or reporting it,
+     * see Project.applyBatch. Called holding the owner's write lock
+     * @param state
+     * @param prio
+     * @param takenBy
+     * @param lastUpdate
+     */
+    void assignValues(TaskState state, TaskPrio prio, String takenBy, LocalDate lastUpdate){
+        this.stateAndPrio = pack(state, prio);
+        this.takenBy = TakenByNames.numberOf(takenBy);
+        this.lastUpdate = epochDay(lastUpdate);
+        VERSION.incrementAndGet(this);
     }
 
     /**
@@ -135,7 +551,7 @@ public class Task  implements Comparable<Task>, Serializable {
 
     @Override
     public int compareTo(Task other) {
-        int prioComp = prio.compareTo(other.prio);
+        int prioComp = Integer.compare(stateAndPrio & 0xF, other.stateAndPrio & 0xF);
         if(prioComp != 0){
             return prioComp;
         }
@@ -156,12 +572,12 @@ public class Task  implements Comparable<Task>, Serializable {
             return false;
         }
         Task task = (Task) o;
-        return prio == task.prio && Objects.equals(description, task.description);
+        return getPrio() == task.getPrio() && Objects.equals(description, task.description);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(description, prio);
+        return Objects.hash(description, getPrio());
     }
 
     @Override
@@ -169,10 +585,44 @@ public class Task  implements Comparable<Task>, Serializable {
         return "Task{" +
                 "description='" + description + '\'' +
                 ", id=" + id +
-                ", takenBy='" + takenBy + '\'' +
-                ", state=" + state +
-                ", lastUpdate=" + lastUpdate +
-                ", prio=" + prio +
+                ", takenBy='" + getTakenBy() + '\'' +
+                ", state=" + getState() +
+                ", lastUpdate=" + getLastUpdate() +
+                ", prio=" + getPrio() +
                 '}';
     }
+
+    /**
+     * Writes the values in their original serialized form, not the packed one
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("description", description);
+        fields.put("id", id);
+        fields.put("takenBy", getTakenBy());
+        fields.put("state", getState());
+        fields.put("lastUpdate", getLastUpdate());
+        fields.put("prio", getPrio());
+        out.writeFields();
+    }
+
+    /**
+     * Reads the original serialized form. The final fields cannot be set here,
+     * so the values go into a new task that readResolve puts in place of this one
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        READ.set(new Task((String) fields.get("description", null), (TaskPrio) fields.get("prio", null),
+                fields.get("id", 0), (TaskState) fields.get("state", null), (String) fields.get("takenBy", null),
+                (LocalDate) fields.get("lastUpdate", null)));
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        Task read = READ.get();
+        READ.remove();
+        if(read == null){
+            throw new InvalidObjectException("Task read without its fields");
+        }
+        return read;
+    }
 }
@@ -0,0 +1,145 @@
+package model;
+
+import matcher.ITaskMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A group of task changes to one project, applied together by apply.
+ * The whole batch runs under one hold of the project's write lock, so other users see
+ * either none or all of its changes. Every added or changed task gets the same last update,
+ * and the changes are reported to the listener once, as one batch.
+ * Operations run in the order they were given, a matcher sees the changes made before it.
+ * Create batches with Project.batch.
+ */
+
+public class TaskBatch {
+    private final Project project;
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * One queued operation, an add when matcher is null
+     */
+    static final class Operation {
+        final ITaskMatcher matcher;
+        final String description;
+        final TaskPrio prio;
+        final TaskState state;
+        final String takenBy;
+        final boolean setsTakenBy;
+
+        private Operation(ITaskMatcher matcher, String description, TaskPrio prio, TaskState state,
+                          String takenBy, boolean setsTakenBy) {
+            this.matcher = matcher;
+            this.description = description;
+            this.prio = prio;
+            this.state = state;
+            this.takenBy = takenBy;
+            this.setsTakenBy = setsTakenBy;
+        }
+    }
+
+    /**
+     * This constructor is package-private, batches are created via Project.batch
+     * @param project
+     */
+    TaskBatch(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Adds a new task with the next unique ID, see Project.addTask
+     * @param description
+     * @param prio
+     * @return this batch
+     */
+    public TaskBatch addTask(String description, TaskPrio prio) {
+        operations.add(new Operation(null, Objects.requireNonNull(description), Objects.requireNonNull(prio),
+                null, null, false));
+        return this;
+    }
+
+    /**
+     * Sets the state of all matching tasks that are in another state
+     * @param matcher
+     * @param state
+     * @return this batch
+     */
+    public TaskBatch setState(ITaskMatcher matcher, TaskState state) {
+        operations.add(new Operation(Objects.requireNonNull(matcher), null, null, Objects.requireNonNull(state),
+                null, false));
+        return this;
+    }
+
+    /**
+     * Sets the priority of all matching tasks that have another priority
+     * @param matcher
+     * @param prio
+     * @return this batch
+     */
+    public TaskBatch setPrio(ITaskMatcher matcher, TaskPrio prio) {
+        operations.add(new Operation(Objects.requireNonNull(matcher), null, Objects.requireNonNull(prio), null,
+                null, false));
+        return this;
+    }
+
+    /**
+     * Assigns all matching tasks to a person, also tasks already taken by someone else.
+     * Unlike Task.setTakenBy this replaces the current assignment
+     * @param matcher
+     * @param takenBy the new assignee, or null to unassign the tasks
+     * @return this batch
+     */
+    public TaskBatch reassign(ITaskMatcher matcher, String takenBy) {
+        operations.add(new Operation(Objects.requireNonNull(matcher), null, null, null, takenBy, true));
+        return this;
+    }
+
+    /**
+     *
+     * @return the number of queued operations
+     */
+    public int size() {
+        return operations.size();
+    }
+
+    /**
+     * Applies all operations at once, dated today. The batch can be applied again afterwards.
+     * If an operation or the project's listener throws, none of the changes are kept.
+     * @return the changes made
+     */
+    public Result apply() {
+        return project.applyBatch(operations);
+    }
+
+    /**
+     * The tasks a batch added and changed
+     */
+    public static final class Result {
+        private final List<Task> added;
+        private final List<Task> changed;
+
+        Result(List<Task> added, List<Task> changed) {
+            this.added = added;
+            this.changed = changed;
+        }
+
+        /**
+         *
+         * @return the added tasks in the order they were given
+         */
+        public List<Task> getAdded() {
+            return added;
+        }
+
+        /**
+         *
+         * @return the tasks that existed before the batch and were changed by it, each once
+         */
+        public List<Task> getChanged() {
+            return changed;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The tasks of a Project stored column by column: one primitive array per value,
+ * where row i holds the values of the task at position i of the project's task list.
+ * Every state, priority and person also has a compressed bitmap of its rows, see RowBitmap,
+ * updated as the tasks change, so matchers select rows without visiting any Task object
+ * and without scanning the columns, see ITaskMatcher.select. Ranges of IDs and update dates
+ * are selected by scanning their int columns in tight loops without branches, 64 rows per word.
+ * Selections are bitsets, bit i of word i / 64 set for row i, combined with and, or, andNot and not.
+ * Kept in sync by the project holding its write lock, read holding its read lock.
+ */
+
+public final class TaskColumns {
+    private byte[] states = new byte[16]; // state ordinals
+    private byte[] prios = new byte[16]; // priority ordinals
+    private int[] takenBy = new int[16]; // numbers in TakenByNames
+    private int[] ids = new int[16];
+    private int[] lastUpdates = new int[16]; // epoch days
+    private int size;
+    private final RowBitmap[] stateRows = bitmaps(TaskState.values().length); // by state ordinal
+    private final RowBitmap[] prioRows = bitmaps(TaskPrio.values().length); // by priority ordinal
+    private RowBitmap[] takenByRows = new RowBitmap[0]; // by TakenByNames number, null if nobody's rows
+
+    /**
+     * This constructor is package-private, the columns are kept by Project
+     */
+    TaskColumns(){
+    }
+
+    private static RowBitmap[] bitmaps(int count){
+        RowBitmap[] bitmaps = new RowBitmap[count];
+        for(int i = 0; i < count; i++){
+            bitmaps[i] = new RowBitmap();
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Stores the current values of a task, appending a row when the row is the next one
+     * @param row the position of the task in the project's task list
+     * @param task
+     */
+    void set(int row, Task task){
+        byte state = (byte) task.getState().ordinal();
+        byte prio = (byte) task.getPrio().ordinal();
+        int person = TakenByNames.numberOf(task.getTakenBy());
+        if(row == size){
+            if(size == states.length){
+                int capacity = size * 2;
+                states = Arrays.copyOf(states, capacity);
+                prios = Arrays.copyOf(prios, capacity);
+                takenBy = Arrays.copyOf(takenBy, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                lastUpdates = Arrays.copyOf(lastUpdates, capacity);
+            }
+            size++;
+            addRow(row, state, prio, person);
+        } else if(states[row] != state || prios[row] != prio || takenBy[row] != person){
+            removeRow(row);
+            addRow(row, state, prio, person);
+        }
+        states[row] = state;
+        prios[row] = prio;
+        takenBy[row] = person;
+        ids[row] = task.getId();
+        lastUpdates[row] = task.getLastUpdateDay();
+    }
+
+    /**
+     * Removes a row by moving the last row into it, like the project's task list
+     * @param row
+     */
+    void remove(int row){
+        int last = --size;
+        removeRow(row);
+        if(row != last){
+            removeRow(last);
+            addRow(row, states[last], prios[last], takenBy[last]);
+        }
+        states[row] = states[last];
+        prios[row] = prios[last];
+        takenBy[row] = takenBy[last];
+        ids[row] = ids[last];
+        lastUpdates[row] = lastUpdates[last];
+    }
+
+    private void addRow(int row, byte state, byte prio, int person){
+        stateRows[state].add(row);
+        prioRows[prio].add(row);
+        if(person != TakenByNames.NONE){
+            if(person >= takenByRows.length){
+                takenByRows = Arrays.copyOf(takenByRows, Math.max(person + 1, takenByRows.length * 2));
+            }
+            if(takenByRows[person] == null){
+                takenByRows[person] = new RowBitmap();
+            }
+            takenByRows[person].add(row);
+        }
+    }
+
+    /**
+     * Removes the row from the bitmaps of the values stored in it
+     */
+    private void removeRow(int row){
+        stateRows[states[row]].remove(row);
+        prioRows[prios[row]].remove(row);
+        int person = takenBy[row];
+        if(person != TakenByNames.NONE){
+            RowBitmap rows = takenByRows[person];
+            rows.remove(row);
+            if(rows.cardinality() == 0){
+                takenByRows[person] = null;
+            }
+        }
+    }
+
+    /**
+     *
+     * @return the number of rows
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     *
+     * @return a selection of no rows
+     */
+    public long[] none(){
+        return new long[words()];
+    }
+
+    /**
+     *
+     * @return a selection of all rows
+     */
+    public long[] all(){
+        long[] rows = new long[words()];
+        Arrays.fill(rows, -1L);
+        clearTail(rows);
+        return rows;
+    }
+
+    /**
+     *
+     * @param state
+     * @return the rows of the tasks in the given state
+     */
+    public long[] withState(TaskState state){
+        return rowsOf(stateRows[state.ordinal()]);
+    }
+
+    /**
+     *
+     * @param states
+     * @return the rows of the tasks in any of the given states
+     */
+    public long[] withStates(Set<TaskState> states){
+        long[] rows = none();
+        for(TaskState state : states){
+            or(rows, withState(state));
+        }
+        return rows;
+    }
+
+    /**
+     *
+     * @param prio
+     * @return the rows of the tasks with the given priority
+     */
+    public long[] withPrio(TaskPrio prio){
+        return rowsOf(prioRows[prio.ordinal()]);
+    }
+
+    /**
+     *
+     * @param name
+     * @return the rows of the tasks taken by the given person
+     */
+    public long[] takenBy(String name){
+        int number = TakenByNames.find(name);
+        if(number == TakenByNames.NONE || number >= takenByRows.length){
+            return none();
+        }
+        return rowsOf(takenByRows[number]);
+    }
+
+    /**
+     *
+     * @param date
+     * @return the rows of the tasks last updated on or after the given date
+     */
+    public long[] updatedSince(LocalDate date){
+        return atLeast(lastUpdates, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay())));
+    }
+
+    /**
+     *
+     * @param id
+     * @return the rows of the tasks with a greater ID, the tasks added after the task with the ID
+     */
+    public long[] addedAfter(int id){
+        return id == Integer.MAX_VALUE ? none() : atLeast(ids, id + 1);
+    }
+
+    /**
+     * Compares 64 rows per word, the sign of the difference is the bit, so the loop has no branches
+     * @return the rows whose value in the column is at least min
+     */
+    private long[] atLeast(int[] column, int min){
+        long[] rows = new long[words()];
+        for(int word = 0; word < rows.length; word++){
+            int base = word << 6;
+            int end = Math.min(64, size - base);
+            long bits = 0;
+            for(int bit = 0; bit < end; bit++){
+                bits |= (((long) min - column[base + bit] - 1) >>> 63) << bit;
+            }
+            rows[word] = bits;
+        }
+        return rows;
+    }
+
+    /**
+     *
+     * @param state
+     * @return the number of tasks in the given state
+     */
+    public int countWithState(TaskState state){
+        return stateRows[state.ordinal()].cardinality();
+    }
+
+    /**
+     *
+     * @param prio
+     * @return the number of tasks with the given priority
+     */
+    public int countWithPrio(TaskPrio prio){
+        return prioRows[prio.ordinal()].cardinality();
+    }
+
+    /**
+     *
+     * @param name
+     * @return the number of tasks taken by the given person
+     */
+    public int countTakenBy(String name){
+        int number = TakenByNames.find(name);
+        if(number == TakenByNames.NONE || number >= takenByRows.length || takenByRows[number] == null){
+            return 0;
+        }
+        return takenByRows[number].cardinality();
+    }
+
+    private long[] rowsOf(RowBitmap bitmap){
+        long[] rows = none();
+        if(bitmap != null){
+            bitmap.orInto(rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Keeps the rows selected in both, in place
+     * @param rows
+     * @param other
+     * @return rows
+     */
+    public static long[] and(long[] rows, long[] other){
+        for(int word = 0; word < rows.length; word++){
+            rows[word] &= other[word];
+        }
+        return rows;
+    }
+
+    /**
+     * Adds the rows selected in other, in place
+     * @param rows
+     * @param other
+     * @return rows
+     */
+    public static long[] or(long[] rows, long[] other){
+        for(int word = 0; word < rows.length; word++){
+            rows[word] |= other[word];
+        }
+        return rows;
+    }
+
+    /**
+     * Removes the rows selected in other, in place
+     * @param rows
+     * @param other
+     * @return rows
+     */
+    public static long[] andNot(long[] rows, long[] other){
+        for(int word = 0; word < rows.length; word++){
+            rows[word] &= ~other[word];
+        }
+        return rows;
+    }
+
+    /**
+     * Selects the rows not selected, in place
+     * @param rows
+     * @return rows
+     */
+    public long[] not(long[] rows){
+        for(int word = 0; word < rows.length; word++){
+            rows[word] = ~rows[word];
+        }
+        clearTail(rows);
+        return rows;
+    }
+
+    /**
+     *
+     * @param rows
+     * @return the number of selected rows
+     */
+    public static int count(long[] rows){
+        int count = 0;
+        for(long word : rows){
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private int words(){
+        return (size + 63) >>> 6;
+    }
+
+    private void clearTail(long[] rows){
+        if((size & 63) != 0){
+            rows[rows.length - 1] &= -1L >>> (64 - (size & 63));
+        }
+    }
+}
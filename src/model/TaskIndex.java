@@ -0,0 +1,88 @@
+package model;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Read-only view of the secondary indexes a Project keeps over its tasks.
+ * Matchers use it to look up candidate tasks instead of scanning the whole project.
+ * State, priority and takenBy lookups give the tasks in natural order, word lookups in no particular order.
+ */
+
+public interface TaskIndex {
+    /**
+     *
+     * @param state
+     * @return the tasks currently in the given state
+     */
+    Collection<Task> withState(TaskState state);
+
+    /**
+     *
+     * @param states
+     * @return the tasks currently in any of the given states, merged lazily in natural order
+     */
+    Collection<Task> withStates(Set<TaskState> states);
+
+    /**
+     *
+     * @param prio
+     * @return the tasks currently having the given priority
+     */
+    Collection<Task> withPrio(TaskPrio prio);
+
+    /**
+     *
+     * @param takenBy
+     * @return the tasks currently taken by the given person
+     */
+    Collection<Task> takenBy(String takenBy);
+
+    /**
+     *
+     * @param words normalized words, see search.Tokenizer
+     * @return the tasks whose description contains all the words
+     */
+    Collection<Task> withAllWords(Collection<String> words);
+
+    /**
+     *
+     * @param words normalized words, see search.Tokenizer
+     * @return the tasks whose description contains at least one of the words
+     */
+    Collection<Task> withAnyWord(Collection<String> words);
+
+    /**
+     *
+     * @return the number of indexed tasks
+     */
+    int size();
+
+    /**
+     *
+     * @param state
+     * @return the number of tasks in the given state
+     */
+    int countWithState(TaskState state);
+
+    /**
+     *
+     * @param prio
+     * @return the number of tasks with the given priority
+     */
+    int countWithPrio(TaskPrio prio);
+
+    /**
+     *
+     * @param takenBy
+     * @return the number of tasks taken by the given person
+     */
+    int countTakenBy(String takenBy);
+
+    /**
+     *
+     * @param word a normalized word, see search.Tokenizer
+     * @return the number of tasks whose description contains the word
+     */
+    int countWithWord(String word);
+}
@@ -0,0 +1,307 @@
+package model;
+
+import search.InvertedIndex;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.IntFunction;
+
+/**
+ * The secondary indexes of a Project: all tasks in natural order, tasks grouped by
+ * state and takenBy, and an inverted index over the words of the task descriptions.
+ * The sets are skip lists ordered by Task.ORDER, so those lookups come out sorted.
+ * Since the natural order starts with the priority, the tasks with a given priority are a
+ * range of the ordered set and need no set of their own. The counts are read from the
+ * bitmaps of the project's TaskColumns, since skip lists count in linear time.
+ * A task must be removed before its priority changes and added again afterwards.
+ */
+
+class TaskIndexes implements TaskIndex {
+    private static final TaskPrio[] PRIOS = TaskPrio.values();
+    private static final Task[] PRIO_STARTS = prioStarts(); // sorts before every task with the priority
+
+    private final NavigableSet<Task> ordered;
+    private final Map<TaskState, NavigableSet<Task>> byState;
+    private final Map<String, NavigableSet<Task>> byTakenBy;
+    private final InvertedIndex byWord; // postings of task ids
+    private final IntFunction<Task> tasksById;
+    private final TaskColumns columns;
+    private int size;
+
+    /**
+     *
+     * @param tasksById resolves task ids from the word index to tasks
+     * @param columns the columns of the same tasks, for the counts
+     */
+    TaskIndexes(IntFunction<Task> tasksById, TaskColumns columns) {
+        this.ordered = new ConcurrentSkipListSet<>(Task.ORDER);
+        this.byState = new EnumMap<>(TaskState.class);
+        this.byTakenBy = new HashMap<>();
+        this.byWord = new InvertedIndex();
+        this.tasksById = tasksById;
+        this.columns = columns;
+    }
+
+    private static Task[] prioStarts(){
+        Task[] starts = new Task[PRIOS.length];
+        for(TaskPrio prio : PRIOS){
+            starts[prio.ordinal()] = new Task("", prio, Integer.MIN_VALUE);
+        }
+        return starts;
+    }
+
+    /**
+     * Adds the words of the task description, only needed once since the description never changes
+     * @param task
+     */
+    void addText(Task task){
+        byWord.add(task.getId(), task.getDescription());
+    }
+
+    /**
+     * Removes the words of the task description
+     * @param task
+     */
+    void removeText(Task task){
+        byWord.remove(task.getId(), task.getDescription());
+    }
+
+    /**
+     * Adds the task to the indexes using its current state, priority and takenBy
+     * @param task
+     */
+    void add(Task task){
+        if(!ordered.add(task)){
+            return;
+        }
+        size++;
+        byState.computeIfAbsent(task.getState(), key -> newSet()).add(task);
+        String takenBy = task.getTakenBy();
+        if(takenBy != null){
+            byTakenBy.computeIfAbsent(takenBy, key -> newSet()).add(task);
+        }
+    }
+
+    /**
+     * Removes the task from the indexes, must be called before the indexed values change
+     * @param task
+     */
+    void remove(Task task){
+        if(!ordered.remove(task)){
+            return;
+        }
+        size--;
+        removeFrom(byState.get(task.getState()), task);
+        removeTaken(task.getTakenBy(), task);
+    }
+
+    /**
+     * Moves the task to the state and takenBy groups of its current values after they changed.
+     * Only for changes that keep the priority, since the natural order depends on it
+     * @param task
+     * @param oldState the state the task was indexed with
+     * @param oldTakenBy the takenBy the task was indexed with
+     */
+    void move(Task task, TaskState oldState, String oldTakenBy){
+        if(task.getState() != oldState){
+            removeFrom(byState.get(oldState), task);
+            byState.computeIfAbsent(task.getState(), key -> newSet()).add(task);
+        }
+        String takenBy = task.getTakenBy();
+        if(!Objects.equals(takenBy, oldTakenBy)){
+            removeTaken(oldTakenBy, task);
+            if(takenBy != null){
+                byTakenBy.computeIfAbsent(takenBy, key -> newSet()).add(task);
+            }
+        }
+    }
+
+    /**
+     *
+     * @return all indexed tasks in natural order
+     */
+    NavigableSet<Task> all(){
+        return Collections.unmodifiableNavigableSet(ordered);
+    }
+
+    @Override
+    public Collection<Task> withState(TaskState state) {
+        return new OrderedTasks(view(byState.get(state)), columns.countWithState(state));
+    }
+
+    @Override
+    public Collection<Task> withStates(Set<TaskState> states) {
+        List<NavigableSet<Task>> sets = new ArrayList<>();
+        int count = 0;
+        for(TaskState state : states){
+            NavigableSet<Task> set = byState.get(state);
+            if(set != null && !set.isEmpty()){
+                sets.add(set);
+                count += columns.countWithState(state);
+            }
+        }
+        if(sets.size() == 1){
+            return new OrderedTasks(view(sets.get(0)), count);
+        }
+        return new OrderedTasks(() -> new MergingIterator(sets), count);
+    }
+
+    @Override
+    public Collection<Task> withPrio(TaskPrio prio) {
+        int next = prio.ordinal() + 1;
+        NavigableSet<Task> range = next < PRIOS.length
+                ? ordered.subSet(PRIO_STARTS[prio.ordinal()], true, PRIO_STARTS[next], false)
+                : ordered.tailSet(PRIO_STARTS[prio.ordinal()], true);
+        return new OrderedTasks(view(range), columns.countWithPrio(prio));
+    }
+
+    @Override
+    public Collection<Task> takenBy(String takenBy) {
+        return new OrderedTasks(view(byTakenBy.get(takenBy)), columns.countTakenBy(takenBy));
+    }
+
+    @Override
+    public Collection<Task> withAllWords(Collection<String> words) {
+        return resolve(byWord.allWords(words));
+    }
+
+    @Override
+    public Collection<Task> withAnyWord(Collection<String> words) {
+        return resolve(byWord.anyWord(words));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int countWithState(TaskState state) {
+        return columns.countWithState(state);
+    }
+
+    @Override
+    public int countWithPrio(TaskPrio prio) {
+        return columns.countWithPrio(prio);
+    }
+
+    @Override
+    public int countTakenBy(String takenBy) {
+        return columns.countTakenBy(takenBy);
+    }
+
+    @Override
+    public int countWithWord(String word) {
+        return byWord.count(word);
+    }
+
+    private static NavigableSet<Task> newSet(){
+        return new ConcurrentSkipListSet<>(Task.ORDER);
+    }
+
+    private static void removeFrom(NavigableSet<Task> set, Task task){
+        if(set != null){
+            set.remove(task);
+        }
+    }
+
+    private void removeTaken(String takenBy, Task task){
+        if(takenBy == null){
+            return;
+        }
+        NavigableSet<Task> taken = byTakenBy.get(takenBy);
+        removeFrom(taken, task);
+        if(taken != null && taken.isEmpty()){
+            byTakenBy.remove(takenBy);
+        }
+    }
+
+    private static NavigableSet<Task> view(NavigableSet<Task> set){
+        if(set == null){
+            return Collections.emptyNavigableSet();
+        }
+        return Collections.unmodifiableNavigableSet(set);
+    }
+
+    /**
+     *
+     * @param tasks a lookup result
+     * @return true if iterating the tasks gives them in Task.ORDER
+     */
+    static boolean isOrdered(Collection<Task> tasks){
+        if(tasks instanceof SortedSet<Task> sorted){
+            return sorted.comparator() == Task.ORDER;
+        }
+        return tasks instanceof OrderedTasks;
+    }
+
+    /**
+     * Tasks in natural order, read from the live sets while iterating,
+     * with their count taken from the columns when the lookup was made
+     */
+    private static final class OrderedTasks extends AbstractCollection<Task> {
+        private final Iterable<Task> tasks;
+        private final int count;
+
+        OrderedTasks(Iterable<Task> tasks, int count){
+            this.tasks = tasks;
+            this.count = count;
+        }
+
+        @Override
+        public Iterator<Task> iterator() {
+            return tasks.iterator();
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+
+    /**
+     * Merges sorted sets lazily, the tasks are read from the sets while iterating
+     */
+    private static final class MergingIterator implements Iterator<Task> {
+        private final PriorityQueue<Map.Entry<Task, Iterator<Task>>> heads;
+
+        MergingIterator(List<NavigableSet<Task>> sets){
+            this.heads = new PriorityQueue<>(Math.max(1, sets.size()), Map.Entry.comparingByKey(Task.ORDER));
+            for(NavigableSet<Task> set : sets){
+                advance(set.iterator());
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Task next() {
+            Map.Entry<Task, Iterator<Task>> head = heads.poll();
+            if(head == null){
+                throw new NoSuchElementException();
+            }
+            advance(head.getValue());
+            return head.getKey();
+        }
+
+        private void advance(Iterator<Task> iterator){
+            if(iterator.hasNext()){
+                heads.add(new AbstractMap.SimpleEntry<>(iterator.next(), iterator));
+            }
+        }
+    }
+
+    private List<Task> resolve(int[] ids){
+        List<Task> found = new ArrayList<>(ids.length);
+        for(int id : ids){
+            Task task = tasksById.apply(id);
+            if(task != null){
+                found.add(task);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,16 @@
+package model;
+
+/**
+ * Source of the stored tasks of a Project whose tasks are loaded on first use,
+ * see Project.deferTasks.
+ */
+
+public interface TaskLoader {
+    /**
+     * Adds the stored tasks to the project using Project.restoreTask.
+     * Called at most once, the first time the project's tasks are needed.
+     * @param project
+     * @throws java.io.UncheckedIOException if the tasks could not be read
+     */
+    void loadTasks(Project project);
+}
@@ -0,0 +1,78 @@
+package search;
+
+import java.util.Arrays;
+
+/**
+ * A postings list: a sorted set of int ids stored in a growable array.
+ * Ids are usually allocated in increasing order, so adding is an append in the common case.
+ */
+
+class IntPostings {
+    private int[] ids;
+    private int size;
+
+    IntPostings() {
+        this.ids = new int[4];
+    }
+
+    /**
+     * Adds the id, keeping the list sorted
+     * @param id
+     * @return true if the id was not already present
+     */
+    boolean add(int id) {
+        int pos = size == 0 || ids[size - 1] < id ? -(size + 1) : Arrays.binarySearch(ids, 0, size, id);
+        if (pos >= 0) {
+            return false;
+        }
+        pos = -(pos + 1);
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        ids[pos] = id;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes the id
+     * @param id
+     * @return true if the id was present
+     */
+    boolean remove(int id) {
+        int pos = Arrays.binarySearch(ids, 0, size, id);
+        if (pos < 0) {
+            return false;
+        }
+        System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     *
+     * @param id
+     * @return true if the id is present
+     */
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     *
+     * @param index
+     * @return the id at the given position in sorted order
+     */
+    int get(int index) {
+        return ids[index];
+    }
+}
@@ -0,0 +1,130 @@
+package search;
+
+import java.util.*;
+
+/**
+ * Inverted index from words to the ids of the documents containing them.
+ * Every word keeps a sorted postings list of ids, so AND queries intersect
+ * the lists starting with the shortest one and OR queries merge them.
+ */
+
+public class InvertedIndex {
+    private static final int[] NO_IDS = new int[0];
+
+    private final Map<String, IntPostings> postings;
+
+    /**
+     * Creates an empty index
+     */
+    public InvertedIndex() {
+        this.postings = new HashMap<>();
+    }
+
+    /**
+     * Indexes the words of the text for the document
+     * @param id
+     * @param text
+     */
+    public void add(int id, String text) {
+        for (String word : new HashSet<>(Tokenizer.words(text))) {
+            postings.computeIfAbsent(word, key -> new IntPostings()).add(id);
+        }
+    }
+
+    /**
+     * Removes the document, the text must be the same as when it was added
+     * @param id
+     * @param text
+     */
+    public void remove(int id, String text) {
+        for (String word : new HashSet<>(Tokenizer.words(text))) {
+            IntPostings ids = postings.get(word);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @param word a normalized word, see Tokenizer.words
+     * @return the number of documents containing the word
+     */
+    public int count(String word) {
+        IntPostings ids = postings.get(word);
+        return ids == null ? 0 : ids.size();
+    }
+
+    /**
+     *
+     * @param words normalized words, see Tokenizer.words
+     * @return the sorted ids of the documents containing all the words
+     */
+    public int[] allWords(Collection<String> words) {
+        if (words.isEmpty()) {
+            return NO_IDS;
+        }
+        List<IntPostings> lists = new ArrayList<>();
+        for (String word : words) {
+            IntPostings ids = postings.get(word);
+            if (ids == null) {
+                return NO_IDS;
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(IntPostings::size));
+        IntPostings smallest = lists.get(0);
+        int[] result = new int[smallest.size()];
+        int count = 0;
+        for (int i = 0; i < smallest.size(); i++) {
+            int id = smallest.get(i);
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(id);
+            }
+            if (inAll) {
+                result[count++] = id;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     *
+     * @param words normalized words, see Tokenizer.words
+     * @return the sorted ids of the documents containing at least one of the words
+     */
+    public int[] anyWord(Collection<String> words) {
+        int[] result = NO_IDS;
+        for (String word : new HashSet<>(words)) {
+            IntPostings ids = postings.get(word);
+            if (ids != null) {
+                result = union(result, ids);
+            }
+        }
+        return result;
+    }
+
+    private static int[] union(int[] sorted, IntPostings ids) {
+        int[] merged = new int[sorted.length + ids.size()];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < sorted.length || j < ids.size()) {
+            int next;
+            if (j == ids.size() || (i < sorted.length && sorted[i] < ids.get(j))) {
+                next = sorted[i++];
+            } else if (i == sorted.length || ids.get(j) < sorted[i]) {
+                next = ids.get(j++);
+            } else {
+                next = sorted[i++];
+                j++;
+            }
+            merged[count++] = next;
+        }
+        return Arrays.copyOf(merged, count);
+    }
+}
@@ -0,0 +1,141 @@
+package search;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * A character trie mapping string keys to the ids of the documents containing them.
+ * Children are kept in sorted arrays, so walking a subtree visits keys in lexicographic order.
+ */
+
+class PrefixTrie {
+    private final Node root = new Node();
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        char[] keys = NO_KEYS;
+        Node[] children = NO_CHILDREN;
+        IntPostings ids; // documents whose key ends at this node, null if none
+
+        Node child(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            return pos >= 0 ? children[pos] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            if (pos >= 0) {
+                return children[pos];
+            }
+            pos = -(pos + 1);
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            System.arraycopy(keys, pos, newKeys, pos + 1, keys.length - pos);
+            System.arraycopy(children, pos, newChildren, pos + 1, children.length - pos);
+            Node created = new Node();
+            newKeys[pos] = c;
+            newChildren[pos] = created;
+            keys = newKeys;
+            children = newChildren;
+            return created;
+        }
+
+        void removeChild(char c) {
+            int pos = Arrays.binarySearch(keys, c);
+            if (pos < 0) {
+                return;
+            }
+            char[] newKeys = new char[keys.length - 1];
+            Node[] newChildren = new Node[children.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, pos);
+            System.arraycopy(children, 0, newChildren, 0, pos);
+            System.arraycopy(keys, pos + 1, newKeys, pos, keys.length - pos - 1);
+            System.arraycopy(children, pos + 1, newChildren, pos, children.length - pos - 1);
+            keys = newKeys;
+            children = newChildren;
+        }
+
+        boolean isEmpty() {
+            return keys.length == 0 && (ids == null || ids.isEmpty());
+        }
+    }
+
+    /**
+     * Records that the document contains the key
+     * @param key
+     * @param id
+     */
+    void add(String key, int id) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        if (node.ids == null) {
+            node.ids = new IntPostings();
+        }
+        node.ids.add(id);
+    }
+
+    /**
+     * Removes the document from the key, dropping nodes that become empty
+     * @param key
+     * @param id
+     */
+    void remove(String key, int id) {
+        remove(root, key, 0, id);
+    }
+
+    private boolean remove(Node node, String key, int depth, int id) {
+        if (depth == key.length()) {
+            if (node.ids != null) {
+                node.ids.remove(id);
+                if (node.ids.isEmpty()) {
+                    node.ids = null;
+                }
+            }
+        } else {
+            char c = key.charAt(depth);
+            Node child = node.child(c);
+            if (child != null && remove(child, key, depth + 1, id)) {
+                node.removeChild(c);
+            }
+        }
+        return node != root && node.isEmpty();
+    }
+
+    /**
+     * Visits the ids of all keys starting with the prefix, in key order.
+     * The walk stops as soon as the visitor returns false.
+     * @param prefix
+     * @param visitor
+     */
+    void visitPrefix(String prefix, IntPredicate visitor) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node != null) {
+            visit(node, visitor);
+        }
+    }
+
+    private boolean visit(Node node, IntPredicate visitor) {
+        if (node.ids != null) {
+            for (int i = 0; i < node.ids.size(); i++) {
+                if (!visitor.test(node.ids.get(i))) {
+                    return false;
+                }
+            }
+        }
+        for (Node child : node.children) {
+            if (!visit(child, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+package search;
+
+import model.Project;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Case-insensitive search over project titles and descriptions.
+ * A prefix trie over whole titles and over single words answers prefix queries,
+ * and a trigram index answers substring queries. Results are ranked as:
+ * title starts with the query (exact titles first), then a word of the title or
+ * description starts with the query, then the query occurs anywhere in the title
+ * or description.
+ */
+
+public class ProjectSearchIndex {
+    private static final int GRAM = 3;
+
+    private final PrefixTrie titles;
+    private final PrefixTrie words;
+    private final Map<Long, IntPostings> trigrams;
+    private final IntFunction<Project> projectsById;
+
+    /**
+     * Creates an empty index
+     * @param projectsById resolves the ids stored in the index to projects
+     */
+    public ProjectSearchIndex(IntFunction<Project> projectsById) {
+        this.titles = new PrefixTrie();
+        this.words = new PrefixTrie();
+        this.trigrams = new HashMap<>();
+        this.projectsById = projectsById;
+    }
+
+    /**
+     * Adds a project to the index
+     * @param project
+     */
+    public void add(Project project) {
+        int id = project.getId();
+        titles.add(Tokenizer.normalize(project.getTitle()), id);
+        for (String word : uniqueWords(project)) {
+            words.add(word, id);
+        }
+        for (long gram : uniqueTrigrams(project)) {
+            trigrams.computeIfAbsent(gram, key -> new IntPostings()).add(id);
+        }
+    }
+
+    /**
+     * Removes a project from the index, the project must not have changed since it was added
+     * @param project
+     */
+    public void remove(Project project) {
+        int id = project.getId();
+        titles.remove(Tokenizer.normalize(project.getTitle()), id);
+        for (String word : uniqueWords(project)) {
+            words.remove(word, id);
+        }
+        for (long gram : uniqueTrigrams(project)) {
+            IntPostings postings = trigrams.get(gram);
+            if (postings != null) {
+                postings.remove(id);
+                if (postings.isEmpty()) {
+                    trigrams.remove(gram);
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches titles and descriptions, ignoring case
+     * @param query
+     * @param limit the maximum number of results
+     * @return the matching projects, best matches first
+     */
+    public List<Project> search(String query, int limit) {
+        String normalized = Tokenizer.normalize(query).trim();
+        Set<Project> result = new LinkedHashSet<>();
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>(result);
+        }
+        titles.visitPrefix(normalized, id -> addResult(result, id, limit));
+        if (result.size() < limit) {
+            words.visitPrefix(normalized, id -> addResult(result, id, limit));
+        }
+        if (result.size() < limit && normalized.length() >= GRAM) {
+            addSubstringMatches(normalized, result, limit);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private boolean addResult(Set<Project> result, int id, int limit) {
+        Project project = projectsById.apply(id);
+        if (project != null) {
+            result.add(project);
+        }
+        return result.size() < limit;
+    }
+
+    /**
+     * Walks the smallest postings list of the query's trigrams and probes the others,
+     * then checks each candidate since the trigrams may occur apart.
+     * Stops as soon as the limit is reached.
+     */
+    private void addSubstringMatches(String query, Set<Project> result, int limit) {
+        List<IntPostings> lists = new ArrayList<>();
+        for (long gram : trigramsOf(query)) {
+            IntPostings postings = trigrams.get(gram);
+            if (postings == null) {
+                return;
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(IntPostings::size));
+        IntPostings smallest = lists.get(0);
+        for (int i = 0; i < smallest.size() && result.size() < limit; i++) {
+            int id = smallest.get(i);
+            if (inAll(lists, id)) {
+                Project project = projectsById.apply(id);
+                if (project != null && contains(project, query)) {
+                    result.add(project);
+                }
+            }
+        }
+    }
+
+    private static boolean inAll(List<IntPostings> lists, int id) {
+        for (int i = 1; i < lists.size(); i++) {
+            if (!lists.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(Project project, String query) {
+        return Tokenizer.normalize(project.getTitle()).contains(query)
+                || Tokenizer.normalize(project.getDescription()).contains(query);
+    }
+
+    private static Set<String> uniqueWords(Project project) {
+        Set<String> unique = new HashSet<>(Tokenizer.words(project.getTitle()));
+        unique.addAll(Tokenizer.words(project.getDescription()));
+        return unique;
+    }
+
+    private static Set<Long> uniqueTrigrams(Project project) {
+        Set<Long> unique = trigramsOf(Tokenizer.normalize(project.getTitle()));
+        unique.addAll(trigramsOf(Tokenizer.normalize(project.getDescription())));
+        return unique;
+    }
+
+    private static Set<Long> trigramsOf(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,51 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text normalization shared by the search indexes.
+ * Text is compared case-insensitively and split into words of letters and digits.
+ */
+
+public class Tokenizer {
+    /**
+     *
+     * @param text
+     * @return the text in lower case, or an empty string for null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits the text into normalized words, duplicates are kept
+     * @param text
+     * @return the words in the order they appear
+     */
+    public static List<String> words(String text) {
+        List<String> words = new ArrayList<>();
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i < normalized.length(); i++) {
+            if (Character.isLetterOrDigit(normalized.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            words.add(normalized.substring(start));
+        }
+        return words;
+    }
+
+    private Tokenizer() {}
+}
@@ -0,0 +1,76 @@
+package server;
+
+import model.Project;
+import model.Task;
+
+import java.time.LocalDate;
+
+/**
+ * Writes the JSON bodies of the server's responses
+ */
+
+final class Json {
+
+    /**
+     * Appends a task with its version, the version is read before the values
+     * so a conditional update with it never overwrites a newer change
+     */
+    static void appendTask(StringBuilder json, Task task) {
+        long version = task.getVersion();
+        json.append("{\"id\":").append(task.getId()).append(",\"description\":");
+        appendString(json, task.getDescription());
+        json.append(",\"prio\":\"").append(task.getPrio().name())
+                .append("\",\"state\":\"").append(task.getState().name()).append("\",\"takenBy\":");
+        appendString(json, task.getTakenBy());
+        json.append(",\"lastUpdate\":\"").append(task.getLastUpdate())
+                .append("\",\"version\":").append(version).append('}');
+    }
+
+    static void appendProject(StringBuilder json, Project project) {
+        json.append("{\"id\":").append(project.getId()).append(",\"title\":");
+        appendString(json, project.getTitle());
+        json.append(",\"description\":");
+        appendString(json, project.getDescription());
+        json.append(",\"created\":\"").append(project.getCreated())
+                .append("\",\"state\":\"").append(project.getState().name())
+                .append("\",\"taskCount\":").append(project.getTaskCount())
+                .append(",\"lastUpdated\":");
+        LocalDate lastUpdated = project.getLastUpdated();
+        appendString(json, lastUpdated == null ? null : lastUpdated.toString());
+        json.append('}');
+    }
+
+    static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private Json() {}
+}
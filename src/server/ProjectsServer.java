@@ -0,0 +1,434 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import exception.TitleNotUniqueException;
+import io.WriteAheadLog;
+import matcher.AddedAfterMatcher;
+import matcher.AndMatcher;
+import matcher.ITaskMatcher;
+import matcher.NotDoneMatcher;
+import matcher.PrioMatcher;
+import matcher.TakenByMatcher;
+import matcher.TextMatcher;
+import matcher.UpdatedSinceMatcher;
+import model.Project;
+import model.ProjectsManager;
+import model.Task;
+import model.TaskBatch;
+import model.TaskPrio;
+import model.TaskState;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the projects of a ProjectsManager over HTTP to any number of users at once.
+ * Every exchange runs on its own virtual thread, so a waiting client costs a few
+ * hundred bytes rather than a platform thread, and the model's locks keep concurrent
+ * changes consistent. Responses are JSON, request values are query or form parameters.
+ * <pre>
+ * GET    /projects[?search=text][&amp;limit=n&amp;offset=n]
+ * POST   /projects                      title, description
+ * GET    /projects/{id}
+ * DELETE /projects/{id}
+ * GET    /projects/{id}/tasks[?prio=HIGH][&amp;takenBy=name][&amp;text=words][&amp;notDone=true]
+ *        [&amp;updatedSince=2024-01-31][&amp;addedAfter=taskId][&amp;limit=n&amp;offset=n]
+ * POST   /projects/{id}/tasks               description, prio
+ * GET    /projects/{id}/tasks/count         task filters as above, without limit and offset
+ * GET    /projects/{id}/tasks/{taskId}
+ * POST   /projects/{id}/tasks/{taskId}      [state] [prio] [takenBy] [version]
+ * DELETE /projects/{id}/tasks/{taskId}
+ * POST   /projects/{id}/tasks/batch         task filters as above, [newState] [newPrio] [newTakenBy]
+ * </pre>
+ * A task update with a version is only applied if the task is still at that version,
+ * otherwise the answer is 409 with the current task, see Task.compareAndSet.
+ * A batch changes all tasks matching the filters in one step, see TaskBatch, an empty
+ * newTakenBy unassigns them.
+ */
+
+public class ProjectsServer {
+    private static final int BACKLOG = 1024;
+    private static final int DEFAULT_LIMIT = 100;
+    private static final String FILE_NAME = "projects.ser";
+
+    static {
+        // the JDK server writes the headers and the body separately, without this the
+        // body waits for the client's delayed ACK of the headers, about 40 ms per request
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final ProjectsManager manager;
+    private final HttpServer http;
+    private final ExecutorService executor;
+
+    /**
+     * Binds the server, call start to accept requests
+     * @param manager
+     * @param address the address to listen on, port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public ProjectsServer(ProjectsManager manager, InetSocketAddress address) throws IOException {
+        this.manager = manager;
+        this.http = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        http.setExecutor(executor);
+        http.createContext("/projects", this::handle);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for the running ones
+     * @param delaySeconds the longest time to wait for running exchanges
+     */
+    public void stop(int delaySeconds) {
+        http.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     *
+     * @return the bound address, with the picked port
+     */
+    public InetSocketAddress getAddress() {
+        return http.getAddress();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int status;
+            String body;
+            try {
+                StringBuilder json = new StringBuilder(256);
+                status = route(exchange, json);
+                body = json.toString();
+            } catch (Conflict e) {
+                status = 409;
+                body = e.body;
+            } catch (TitleNotUniqueException | IllegalStateException e) {
+                status = 409;
+                body = Json.error(e.getMessage());
+            } catch (IllegalArgumentException | DateTimeParseException e) { // also bad numbers and enum names
+                status = 400;
+                body = Json.error(e.getMessage());
+            } catch (RuntimeException e) {
+                status = 500;
+                body = Json.error(String.valueOf(e));
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+            if (bytes.length > 0) {
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers the request into json
+     * @return the status code
+     */
+    private int route(HttpExchange exchange, StringBuilder json) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().split("/");
+        String method = exchange.getRequestMethod();
+        Map<String, String> params = parameters(exchange);
+        // path[0] is empty and path[1] is "projects"
+        if (path.length < 2 || !path[1].equals("projects")) {
+            return notFound(json, exchange.getRequestURI().getPath());
+        }
+        if (path.length == 2) {
+            switch (method) {
+                case "GET":
+                    return listProjects(params, json);
+                case "POST":
+                    Json.appendProject(json, manager.addProject(required(params, "title"),
+                            params.getOrDefault("description", "")));
+                    return 201;
+                default:
+                    return notAllowed(json);
+            }
+        }
+        Project project = manager.getProjectById(Integer.parseInt(path[2]));
+        if (project == null) {
+            return notFound(json, "project " + path[2]);
+        }
+        if (path.length == 3) {
+            switch (method) {
+                case "GET":
+                    Json.appendProject(json, project);
+                    return 200;
+                case "DELETE":
+                    manager.removeProject(project);
+                    return 204;
+                default:
+                    return notAllowed(json);
+            }
+        }
+        if (!path[3].equals("tasks") || path.length > 5) {
+            return notFound(json, exchange.getRequestURI().getPath());
+        }
+        if (path.length == 4) {
+            switch (method) {
+                case "GET":
+                    return listTasks(project, params, json);
+                case "POST":
+                    Json.appendTask(json, project.addTask(required(params, "description"),
+                            TaskPrio.valueOf(params.getOrDefault("prio", TaskPrio.MEDIUM.name()))));
+                    return 201;
+                default:
+                    return notAllowed(json);
+            }
+        }
+        if (path[4].equals("batch")) {
+            if (!method.equals("POST")) {
+                return notAllowed(json);
+            }
+            return applyBatch(project, params, json);
+        }
+        if (path[4].equals("count")) {
+            if (!method.equals("GET")) {
+                return notAllowed(json);
+            }
+            json.append("{\"count\":").append(project.countTasks(matcher(params))).append('}');
+            return 200;
+        }
+        Task task = project.getTaskById(Integer.parseInt(path[4]));
+        if (task == null) {
+            return notFound(json, "task " + path[4]);
+        }
+        switch (method) {
+            case "GET":
+                Json.appendTask(json, task);
+                return 200;
+            case "POST":
+                updateTask(task, params);
+                Json.appendTask(json, task);
+                return 200;
+            case "DELETE":
+                project.removeTask(task);
+                return 204;
+            default:
+                return notAllowed(json);
+        }
+    }
+
+    private int listProjects(Map<String, String> params, StringBuilder json) {
+        int limit = intParameter(params, "limit", DEFAULT_LIMIT);
+        int offset = intParameter(params, "offset", 0);
+        String search = params.get("search");
+        List<Project> projects = search == null ? manager.getProjects() : manager.searchProjects(search, offset + limit);
+        json.append('[');
+        for (int i = offset; i < Math.min(projects.size(), offset + limit); i++) {
+            if (i > offset) {
+                json.append(',');
+            }
+            Json.appendProject(json, projects.get(i));
+        }
+        json.append(']');
+        return 200;
+    }
+
+    private int listTasks(Project project, Map<String, String> params, StringBuilder json) {
+        List<Task> tasks = project.findTasks(matcher(params), intParameter(params, "limit", DEFAULT_LIMIT),
+                intParameter(params, "offset", 0));
+        json.append('[');
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            Json.appendTask(json, tasks.get(i));
+        }
+        json.append(']');
+        return 200;
+    }
+
+    private int applyBatch(Project project, Map<String, String> params, StringBuilder json) {
+        ITaskMatcher matcher = matcher(params);
+        TaskBatch batch = project.batch();
+        if (params.containsKey("newState")) {
+            batch.setState(matcher, TaskState.valueOf(params.get("newState")));
+        }
+        if (params.containsKey("newPrio")) {
+            batch.setPrio(matcher, TaskPrio.valueOf(params.get("newPrio")));
+        }
+        if (params.containsKey("newTakenBy")) {
+            String takenBy = params.get("newTakenBy");
+            batch.reassign(matcher, takenBy.isEmpty() ? null : takenBy);
+        }
+        if (batch.size() == 0) {
+            throw new IllegalArgumentException("Missing newState, newPrio or newTakenBy");
+        }
+        json.append("{\"changed\":").append(batch.apply().getChanged().size()).append('}');
+        return 200;
+    }
+
+    /**
+     *
+     * @return the matcher of the task filters, all tasks if there are none
+     */
+    private static ITaskMatcher matcher(Map<String, String> params) {
+        List<ITaskMatcher> matchers = new ArrayList<>();
+        if (params.containsKey("prio")) {
+            matchers.add(new PrioMatcher(TaskPrio.valueOf(params.get("prio"))));
+        }
+        if (params.containsKey("takenBy")) {
+            matchers.add(new TakenByMatcher(params.get("takenBy")));
+        }
+        if (params.containsKey("text")) {
+            matchers.add(new TextMatcher(params.get("text")));
+        }
+        if (Boolean.parseBoolean(params.get("notDone"))) {
+            matchers.add(new NotDoneMatcher());
+        }
+        if (params.containsKey("updatedSince")) {
+            matchers.add(new UpdatedSinceMatcher(LocalDate.parse(params.get("updatedSince"))));
+        }
+        if (params.containsKey("addedAfter")) {
+            matchers.add(new AddedAfterMatcher(Integer.parseInt(params.get("addedAfter"))));
+        }
+        return matchers.isEmpty() ? task -> true
+                : matchers.size() == 1 ? matchers.get(0) : new AndMatcher(matchers);
+    }
+
+    /**
+     * Applies the given values in the order state, prio, takenBy.
+     * With a version all values are applied together or none, see Task.compareAndSet
+     * @throws Conflict if the task changed since the version, no value is applied then
+     */
+    private static void updateTask(Task task, Map<String, String> params) {
+        TaskState state = params.containsKey("state") ? TaskState.valueOf(params.get("state")) : null;
+        TaskPrio prio = params.containsKey("prio") ? TaskPrio.valueOf(params.get("prio")) : null;
+        String takenBy = params.get("takenBy");
+        if (!params.containsKey("version")) {
+            if (state != null) {
+                task.setState(state);
+            }
+            if (prio != null) {
+                task.setPrio(prio);
+            }
+            if (takenBy != null) {
+                task.setTakenBy(takenBy);
+            }
+            return;
+        }
+        if (!task.compareAndSet(Long.parseLong(params.get("version")), state, prio, takenBy)) {
+            StringBuilder json = new StringBuilder(256);
+            Json.appendTask(json, task);
+            throw new Conflict(json.toString());
+        }
+    }
+
+    /**
+     *
+     * @return the query parameters, and for POST the form parameters of the body
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        decode(exchange.getRequestURI().getRawQuery(), params);
+        if (exchange.getRequestMethod().equals("POST")) {
+            decode(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void decode(String encoded, Map<String, String> params) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = equals < 0 ? pair : pair.substring(0, equals);
+            String value = equals < 0 ? "" : pair.substring(equals + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return value;
+    }
+
+    private static int intParameter(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        int parsed = value == null ? defaultValue : Integer.parseInt(value);
+        if (parsed < 0) {
+            throw new IllegalArgumentException("Negative " + name);
+        }
+        return parsed;
+    }
+
+    private static int notFound(StringBuilder json, String what) {
+        json.append(Json.error("No " + what));
+        return 404;
+    }
+
+    private static int notAllowed(StringBuilder json) {
+        json.append(Json.error("Method not allowed"));
+        return 405;
+    }
+
+    /**
+     * A conditional update found a newer version, carries the current task
+     */
+    private static final class Conflict extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final String body;
+
+        Conflict(String body) {
+            super(null, null, false, false);
+            this.body = body;
+        }
+    }
+
+    /**
+     * Serves the projects file of ProjectApp, logging every change, until the process is stopped.
+     * Only local clients can connect unless a host to listen on is given, such as 0.0.0.0 for all interfaces.
+     * @param args the port, 8080 if none, and the host, the loopback address if none
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        InetSocketAddress address = args.length > 1 ? new InetSocketAddress(args[1], port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("Unknown host " + args[1]);
+        }
+        WriteAheadLog changeLog = WriteAheadLog.open(new File(FILE_NAME));
+        ProjectsServer server = new ProjectsServer(changeLog.getProjectsManager(), address);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            try {
+                changeLog.checkpoint();
+                changeLog.close();
+            } catch (IOException e) {
+                System.out.println("Could not save the projects: " + e.getMessage());
+            }
+        }));
+        server.start();
+        System.out.println("Serving projects on " + server.getAddress());
+    }
+}
@@ -4,15 +4,18 @@ import matcher.ITaskMatcher;
 import matcher.NotDoneMatcher;
 import matcher.PrioMatcher;
 import matcher.TakenByMatcher;
+import matcher.TextMatcher;
 import model.Project;
 import model.Task;
 import model.TaskPrio;
 import model.TaskState;
 
-import java.util.List;
+import java.util.Iterator;
 import java.util.Scanner;
 
 public class CurrentProjectUI {
+    private static final int PAGE_SIZE = 20;
+
     private Project currentProject;
     private final Scanner scan;
 
@@ -50,6 +53,11 @@ public class CurrentProjectUI {
                 case 'H':
                     viewTasks(new PrioMatcher(TaskPrio.HIGH));
                     break;
+                case 'W':
+                    System.out.print("Words? ");
+                    String words = scan.nextLine();
+                    viewTasks(new TextMatcher(words));
+                    break;
                 case 'A':
                     addTask();
                     break;
@@ -66,9 +74,20 @@ public class CurrentProjectUI {
     }
 
     private void viewTasks(ITaskMatcher matcher) {
-        System.out.println(currentProject.toString());
-        List<Task> tasks = currentProject.findTasks(matcher);
+        System.out.println(currentProject.getTitle() + " (" + currentProject.getState() + ")");
+        Iterator<Task> tasks = currentProject.streamTasks(matcher).iterator();
+        if (!tasks.hasNext()) {
+            System.out.println("No tasks added");
+            return;
+        }
         printTasks(tasks);
+        while (tasks.hasNext()) {
+            System.out.print("More tasks (Y/N)? ");
+            if (InputUtils.scanAndReturnFirstChar(scan) != 'Y') {
+                break;
+            }
+            printTasks(tasks);
+        }
     }
 
     private void addTask() {
@@ -86,17 +105,22 @@ public class CurrentProjectUI {
         scan.nextLine(); //remove "new line" from scanner buffer
         Task task = currentProject.getTaskById(id);
         if (task != null) {
+            long version = task.getVersion(); // read before the values, see Task
             System.out.println(task);
             System.out.print("New state (T)odo (D)one? ");
             char stateChar = InputUtils.scanAndReturnFirstChar(scan);
+            boolean updated = true;
             if (stateChar == 'T') {
                 System.out.print("Taken by (name or email address)? ");
                 String emailStr = scan.nextLine();
-                task.setState(TaskState.TO_DO);
-                task.setTakenBy(emailStr);
+                updated = task.compareAndSet(version, TaskState.TO_DO, null, emailStr);
             }
             else if(stateChar == ('D')) {
-                task.setState(TaskState.DONE);
+                updated = task.compareAndSetState(version, TaskState.DONE);
+            }
+            if (!updated) {
+                System.out.println("The task was changed by someone else meanwhile, nothing was updated:");
+                System.out.println(task);
             }
         } else {
             System.out.println("Id not found.");
@@ -108,19 +132,16 @@ public class CurrentProjectUI {
         System.out.println("T - list tasks taken by ...");
         System.out.println("N - list tasks not done");
         System.out.println("H - list high priority tasks");
+        System.out.println("W - list tasks with words ...");
         System.out.println("A - add task");
         System.out.println("U - update task");
         System.out.println("X - exit project menu");
         System.out.println("----------");
     }
 
-    private void printTasks(List<Task> tasks) {
-        if (tasks.isEmpty()) {
-            System.out.println("No tasks added");
-        } else {
-            for (Task task : tasks) {
-                System.out.println(task.toString());
-            }
+    private void printTasks(Iterator<Task> tasks) {
+        for (int printed = 0; printed < PAGE_SIZE && tasks.hasNext(); printed++) {
+            System.out.println(tasks.next().toString());
         }
     }
 }
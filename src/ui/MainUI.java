@@ -1,6 +1,8 @@
 package ui;
 
+import matcher.TakenByMatcher;
 import model.Project;
+import model.ProjectTask;
 import model.ProjectsManager;
 
 import java.util.List;
@@ -12,6 +14,8 @@ import java.util.Scanner;
  */
 
 public class MainUI {
+    private static final int MAX_SEARCH_RESULTS = 20;
+
     private final Scanner scan;
     private final ProjectsManager manager;
     private final CurrentProjectUI currentProjectUI;
@@ -40,6 +44,9 @@ public class MainUI {
                 case 'M':
                     manageProject();
                     break;
+                case 'T':
+                    findTakenTasks();
+                    break;
                 case 'X':
                     break;
                 default:
@@ -52,14 +59,28 @@ public class MainUI {
 
 
     private void findProjects() {
-        System.out.print("Project name? ");
+        System.out.print("Project name (or part of it)? ");
         String name = scan.nextLine();
-        List<Project> result = manager.findProjects(name);
+        List<Project> result = manager.searchProjects(name, MAX_SEARCH_RESULTS);
         if (result.isEmpty()) {
             System.out.println("No matches.");
         } else {
             for (Project project : result) {
-                System.out.println(project.toString());
+                System.out.println(header(project));
+            }
+        }
+    }
+
+
+    private void findTakenTasks() {
+        System.out.print("Name? ");
+        String takenBy = scan.nextLine();
+        List<ProjectTask> result = manager.findTasksAcrossProjects(new TakenByMatcher(takenBy));
+        if (result.isEmpty()) {
+            System.out.println("No matches.");
+        } else {
+            for (ProjectTask found : result) {
+                System.out.println(found);
             }
         }
     }
@@ -85,7 +106,7 @@ public class MainUI {
         scan.nextLine(); //remove "new line" from scanner buffer
         Project currentProject = manager.getProjectById(id);
         if (currentProject != null) { // TODO: This is ugly!
-            System.out.println(currentProject);
+            System.out.println(header(currentProject));
             currentProjectUI.setCurrentProject(currentProject);
         } else {
             System.out.println("Project not found");
@@ -93,11 +114,21 @@ public class MainUI {
     }
 
 
+    /**
+     * Describes a project without its tasks, so the tasks of a project that is
+     * loaded lazily stay on disk until they are listed
+     */
+    private static String header(Project project) {
+        return "Project " + project.getId() + ": " + project.getTitle() + " (" + project.getTaskCount() + " tasks)";
+    }
+
+
     private void printMainMenu() {
         System.out.println("---Main menu---");
         System.out.println("F - find project");
         System.out.println("A - add project");
         System.out.println("M - manage project");
+        System.out.println("T - find tasks taken by someone in all projects");
         System.out.println("X - exit");
         System.out.println("----------");
     }